@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the extract and analyze-spring phases on a synthetic ruleset tree of
+ * rulesets x rules rules (see {@link SyntheticRulesets}). Each phase is measured on its own, with the
+ * input of the previous phases prepared in setup, plus the whole extract end to end.
+ * One operation processes the whole tree. Typical CI run:
+ * -Djmh.args="ExtractBenchmark -prof gc -prof com.example.demo.PeakHeapProfiler -rf json -rff target/jmh-result.json"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExtractBenchmark {
+
+    @Param("20")
+    public int rulesets;
+
+    @Param("100")
+    public int rules;
+
+    @Param({"2", "8"})
+    public int whenComplexity;
+
+    private Path rulesetRoot;
+    private Path outputDir;
+    private List<byte[]> ruleFiles;
+    private List<Map<String, Object>> ruleMaps;
+    private List<ParsedRuleset> parsedRulesets;
+    private Workbook populatedWorkbook;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        rulesetRoot = SyntheticRulesets.generate(Files.createTempDirectory("appcat-bench-rulesets"),
+                rulesets, rules, whenComplexity);
+        outputDir = Files.createTempDirectory("appcat-bench-output");
+
+        ruleFiles = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(rulesetRoot)) {
+            for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+                if (path.getFileName().toString().endsWith("-rules.yaml")) {
+                    ruleFiles.add(Files.readAllBytes(path));
+                }
+            }
+        }
+        ruleMaps = new ArrayList<>();
+        for (byte[] file : ruleFiles) {
+            List<Map<String, Object>> fileRules = YamlContext.get().load(new ByteArrayInputStream(file));
+            ruleMaps.addAll(fileRules);
+        }
+        parsedRulesets = new ArrayList<>();
+        List<RulesetScanner.RulesetDirectory> dirs = RulesetScanner.scan(rulesetRoot.toFile(), List.of());
+        dirs.sort(Comparator.comparing(directory -> directory.dir));
+        for (RulesetScanner.RulesetDirectory dir : dirs) {
+            parsedRulesets.add(RulesetToExcel.parseSubDirectory(dir));
+        }
+        populatedWorkbook = populate();
+
+        // analyze-spring works on the workbook written by extract
+        RulesetToExcel.execute(rulesetRoot.toString(), outputDir.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        populatedWorkbook.close();
+        SyntheticRulesets.delete(rulesetRoot);
+        SyntheticRulesets.delete(outputDir);
+    }
+
+    @Benchmark
+    public void yamlParse(Blackhole bh) {
+        for (byte[] file : ruleFiles) {
+            bh.consume(YamlContext.get().load(new ByteArrayInputStream(file)));
+        }
+    }
+
+    @Benchmark
+    public void whenSerialize(Blackhole bh) {
+        for (Map<String, Object> rule : ruleMaps) {
+            bh.consume(RulesetToExcel.serializeWhen(rule.get("when")));
+        }
+    }
+
+    @Benchmark
+    public void labelExtraction(Blackhole bh) {
+        for (Map<String, Object> rule : ruleMaps) {
+            RuleData data = new RuleData("", "", "");
+            RulesetToExcel.extractLabels(rule.get("labels"), data);
+            bh.consume(data);
+        }
+    }
+
+    @Benchmark
+    public void sheetPopulation(Blackhole bh) throws IOException {
+        try (Workbook workbook = populate()) {
+            bh.consume(workbook.getNumberOfSheets());
+        }
+    }
+
+    @Benchmark
+    public void workbookWrite() throws IOException {
+        populatedWorkbook.write(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void analyzeSpring() {
+        RulesetToExcel.recognizeSpringRules(outputDir.toString());
+    }
+
+    @Benchmark
+    public void extractEndToEnd() {
+        RulesetToExcel.execute(rulesetRoot.toString(), outputDir.toString());
+    }
+
+    private Workbook populate() {
+        Workbook workbook = new XSSFWorkbook();
+        WorkbookCells cells = new WorkbookCells(workbook);
+        for (ParsedRuleset ruleset : parsedRulesets) {
+            RulesetToExcel.writeRulesetSheet(cells, ruleset);
+        }
+        return workbook;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock time of one CLI invocation in a fresh JVM, from process start to exit, for the Spring Boot
+ * jar and the fastlaunch CLI jar with and without its CDS archive. The workloads are small on purpose, so
+ * the time is mostly startup: extract of a 2 x 10 rule tree (see {@link SyntheticRulesets}), and search of
+ * its index. Needs both jars, build them first:
+ * ./mvnw -Pfastlaunch package && ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="StartupBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"boot", "cli", "cli-cds"})
+    public String launcher;
+
+    @Param({"extract", "search"})
+    public String workload;
+
+    private Path rulesetRoot;
+    private Path outputDir;
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        rulesetRoot = SyntheticRulesets.generate(Files.createTempDirectory("appcat-startup-rulesets"), 2, 10, 2);
+        outputDir = Files.createTempDirectory("appcat-startup-output");
+        File target = new File("target");
+        File cdsArchive = new File(target, "cli/demo-cli.jsa");
+        File[] cliJars = new File(target, "cli").listFiles((dir, name) -> name.endsWith("-cli.jar"));
+        File[] bootJars = target.listFiles((dir, name) -> name.startsWith("demo-") && name.endsWith(".jar"));
+        if (cliJars == null || cliJars.length == 0 || !cdsArchive.isFile() || bootJars == null || bootJars.length == 0) {
+            throw new IllegalStateException("Build the jars first: ./mvnw -Pfastlaunch package");
+        }
+
+        File cliJar = cliJars[0];
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        command = new ArrayList<>(List.of(java));
+        switch (launcher) {
+            case "boot":
+                command.addAll(List.of("-jar", bootJars[0].getPath()));
+                break;
+            case "cli":
+                command.addAll(List.of("-jar", cliJar.getPath()));
+                break;
+            case "cli-cds":
+                command.addAll(List.of("-XX:SharedArchiveFile=" + cdsArchive.getPath(), "-XX:TieredStopAtLevel=1",
+                        "-jar", cliJar.getPath()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown launcher " + launcher);
+        }
+        command.add("outputpath=" + outputDir);
+        if (workload.equals("search")) {
+            // The index to search, written once outside the measurement
+            List<String> extract = new ArrayList<>(command);
+            extract.addAll(List.of("rulesetpath=" + rulesetRoot, "action=extract", "index=true"));
+            run(extract);
+            command.addAll(List.of("action=search", "query=java"));
+        } else {
+            command.addAll(List.of("rulesetpath=" + rulesetRoot, "action=extract"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticRulesets.delete(rulesetRoot);
+        SyntheticRulesets.delete(outputDir);
+    }
+
+    @Benchmark
+    public int launch() throws IOException, InterruptedException {
+        return run(command);
+    }
+
+    private static int run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Exit code " + exitCode + " from " + command);
+        }
+        return exitCode;
+    }
+}
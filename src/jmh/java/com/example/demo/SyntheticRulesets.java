@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates AppCat-like ruleset trees for the benchmarks: rulesets subdirectories, each with a
+ * ruleset.yaml and rule files of rulesPerFile rules, rules per ruleset in total. whenComplexity is
+ * the number of provider conditions in each rule's when block; every fourth one is a nested and.
+ * The content is deterministic, so runs with the same parameters extract the same workbook.
+ */
+final class SyntheticRulesets {
+
+    private static final String[] PROVIDERS = {"java.referenced", "builtin.filecontent", "java.dependency", "builtin.xml"};
+    private static final String[] SOURCES = {"springboot", "java-ee", "quarkus", "jakarta-ee"};
+    private static final String[] TARGETS = {"azure-appservice", "azure-spring-apps", "openjdk17", "cloud-readiness"};
+    private static final String[] CATEGORIES = {"mandatory", "optional", "potential"};
+
+    private SyntheticRulesets() {
+    }
+
+    static Path generate(Path root, int rulesets, int rules, int whenComplexity) throws IOException {
+        int rulesPerFile = 20;
+        for (int r = 0; r < rulesets; r++) {
+            Path dir = Files.createDirectories(root.resolve(String.format("ruleset-%03d", r)));
+            Files.writeString(dir.resolve("ruleset.yaml"),
+                    "name: synthetic-" + r + "\ndescription: Synthetic ruleset " + r + " for benchmarks\n");
+            for (int first = 0; first < rules; first += rulesPerFile) {
+                StringBuilder file = new StringBuilder();
+                for (int i = first; i < Math.min(rules, first + rulesPerFile); i++) {
+                    appendRule(file, r, i, whenComplexity);
+                }
+                Files.writeString(dir.resolve(String.format("%03d-rules.yaml", first / rulesPerFile)), file,
+                        StandardCharsets.UTF_8);
+            }
+        }
+        return root;
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static void appendRule(StringBuilder out, int ruleset, int rule, int whenComplexity) {
+        int seed = ruleset * 31 + rule;
+        out.append("- ruleID: synthetic-").append(ruleset).append('-').append(String.format("%05d", rule)).append('\n');
+        out.append("  description: Synthetic rule ").append(rule).append(" of ruleset ").append(ruleset).append('\n');
+        out.append("  message: |-\n");
+        for (int line = 0; line < 8; line++) {
+            out.append("    Line ").append(line).append(" of the migration guidance for rule ").append(rule)
+                    .append(", mentioning ").append(seed % 5 == 0 ? "Spring Boot configuration" : "application server APIs")
+                    .append(" and linking https://learn.microsoft.com/azure/developer/java/migration/\n");
+        }
+        out.append("  labels:\n");
+        out.append("  - konveyor.io/source=").append(SOURCES[seed % SOURCES.length]).append('\n');
+        out.append("  - konveyor.io/target=").append(TARGETS[seed % TARGETS.length]).append('\n');
+        out.append("  - konveyor.io/target=").append(TARGETS[(seed + 1) % TARGETS.length]).append('\n');
+        out.append("  - domain=").append(seed % 2 == 0 ? "cloud" : "framework").append('\n');
+        out.append("  - category=").append(CATEGORIES[seed % CATEGORIES.length]).append('\n');
+        out.append("  when:\n");
+        out.append("    or:\n");
+        for (int c = 0; c < whenComplexity; c++) {
+            if (c % 4 == 3) {
+                out.append("    - and:\n");
+                appendCondition(out, "      ", PROVIDERS[0], seed, c);
+                appendCondition(out, "      ", PROVIDERS[1], seed, c);
+            } else {
+                appendCondition(out, "    ", PROVIDERS[(seed + c) % PROVIDERS.length], seed, c);
+            }
+        }
+    }
+
+    private static void appendCondition(StringBuilder out, String indent, String provider, int seed, int c) {
+        out.append(indent).append("- ").append(provider).append(":\n");
+        String body = indent + "    ";
+        switch (provider) {
+            case "java.referenced":
+                out.append(body).append("pattern: com.example.pkg").append(seed % 97).append(".Type").append(c).append('*').append('\n');
+                out.append(body).append("location: IMPORT\n");
+                break;
+            case "builtin.filecontent":
+                out.append(body).append("filePattern: application.*\\.properties\n");
+                out.append(body).append("pattern: spring\\.datasource\\.url").append(c).append('\n');
+                break;
+            case "java.dependency":
+                out.append(body).append("name: org.example.group").append(seed % 13).append(".artifact").append(c).append('\n');
+                out.append(body).append("lowerbound: 0.0.0\n");
+                break;
+            default:
+                out.append(body).append("xpath: //dependency[artifactId='artifact-").append(c).append("']\n");
+                break;
+        }
+    }
+}
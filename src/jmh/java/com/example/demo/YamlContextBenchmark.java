@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-rule cost of parsing a rule file and re-serializing its when condition, with a new Yaml per
+ * call (as extract did before YamlContext) and with the thread-confined YamlContext.
+ * Run with -prof gc and compare gc.alloc.rate.norm (bytes allocated per operation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class YamlContextBenchmark {
+
+    private static final String RULE_FILE = String.join("\n",
+            "- ruleID: spring-boot-to-azure-00010",
+            "  description: Spring Boot configuration property needs review",
+            "  message: Replace the local configuration with Azure App Configuration.",
+            "  labels:",
+            "  - konveyor.io/source=springboot",
+            "  - konveyor.io/target=azure-spring-apps",
+            "  - domain=cloud",
+            "  - category=mandatory",
+            "  when:",
+            "    or:",
+            "    - builtin.filecontent:",
+            "        filePattern: application.*\\\\.properties",
+            "        pattern: spring\\\\.datasource\\\\.url",
+            "    - java.referenced:",
+            "        location: IMPORT",
+            "        pattern: org.springframework.boot.autoconfigure.jdbc*",
+            "    - and:",
+            "      - java.dependency:",
+            "          name: org.springframework.boot.spring-boot-starter-jdbc",
+            "          lowerbound: 0.0.0",
+            "      - builtin.xml:",
+            "          xpath: //dependency[artifactId='spring-boot-starter-jdbc']",
+            "");
+
+    private byte[] ruleFile;
+    private Object when;
+
+    @Setup
+    public void setup() {
+        ruleFile = RULE_FILE.getBytes(StandardCharsets.UTF_8);
+        List<?> rules = new Yaml().load(RULE_FILE);
+        when = ((Map<?, ?>) rules.get(0)).get("when");
+    }
+
+    @Benchmark
+    public Object parseNewYaml() {
+        return new Yaml().load(new ByteArrayInputStream(ruleFile));
+    }
+
+    @Benchmark
+    public Object parseYamlContext() {
+        return YamlContext.get().load(new ByteArrayInputStream(ruleFile));
+    }
+
+    @Benchmark
+    public String serializeWhenNewYaml() {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setIndent(2);
+        options.setPrettyFlow(true);
+        return new Yaml(options).dump(when).trim();
+    }
+
+    @Benchmark
+    public String serializeWhenYamlContext() {
+        return RulesetToExcel.serializeWhen(when);
+    }
+}
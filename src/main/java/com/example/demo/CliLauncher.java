@@ -0,0 +1,17 @@
+package com.example.demo;
+
+/**
+ * Lightweight entry point for scripts that call the tool many times. Runs the same argument handling as
+ * {@link DemoApplication.CliRunner} without starting a Spring application context, which is most of the
+ * startup time of a short run. Built as target/cli/demo-&lt;version&gt;-cli.jar by the fastlaunch profile, together with a
+ * class data sharing (CDS) archive of the classes a training extract loads.
+ */
+public class CliLauncher {
+
+    private CliLauncher() {
+    }
+
+    public static void main(String[] args) {
+        new DemoApplication.CliRunner().run(args);
+    }
+}
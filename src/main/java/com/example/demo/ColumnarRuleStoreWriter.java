@@ -0,0 +1,176 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the store as a compact column-oriented binary file, big-endian (DataOutputStream):
+ * <pre>
+ * int magic "ACRC", int version
+ * int labelCount, label strings          (distinct source/target/domain/category values)
+ * int classifierCount, title strings
+ * int rulesetCount, per ruleset: name, description, int firstRule
+ * int ruleCount
+ * int textChars, char[textChars]         (RuleID, when and description/message of all rules)
+ * column ruleset      int[ruleCount]
+ * columns labels      4 x int[ruleCount] (label id, -1 for none) in SOURCE, TARGET, DOMAIN, CATEGORY order
+ * columns text        3 x (int[ruleCount] start, int[ruleCount] length, -1 for null) in RULE_ID, WHEN, MESSAGE order
+ * column classified   long[ruleCount]
+ * </pre>
+ * Strings are an int byte length (-1 for null) followed by UTF-8 bytes. A reader that needs only some
+ * columns can skip the others by their known sizes.
+ */
+class ColumnarRuleStoreWriter implements RuleStoreWriter {
+
+    static final int MAGIC = 0x41435243;
+    static final int VERSION = 1;
+
+    @Override
+    public String getFileName() {
+        return "appcat-ruleset.columnar";
+    }
+
+    @Override
+    public void write(RuleStore store, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeStrings(out, store.getLabels());
+            writeStrings(out, store.getClassifierTitles());
+            out.writeInt(store.getRulesetCount());
+            for (int i = 0; i < store.getRulesetCount(); i++) {
+                writeString(out, store.getRulesetName(i));
+                writeString(out, store.getRulesetDescription(i));
+                out.writeInt(store.getFirstRule(i));
+            }
+            int rules = store.getRuleCount();
+            out.writeInt(rules);
+
+            char[] text = store.getTextBuffer();
+            out.writeInt(store.getTextLength());
+            for (int i = 0; i < store.getTextLength(); i++) {
+                out.writeChar(text[i]);
+            }
+            for (int r = 0; r < rules; r++) {
+                out.writeInt(store.getRuleset(r));
+            }
+            for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                for (int r = 0; r < rules; r++) {
+                    out.writeInt(store.getLabelId(r, field));
+                }
+            }
+            for (int field = 0; field < RuleStore.TEXT_FIELDS; field++) {
+                for (int r = 0; r < rules; r++) {
+                    out.writeInt(store.getTextStart(r, field));
+                }
+                for (int r = 0; r < rules; r++) {
+                    out.writeInt(store.getTextLength(r, field));
+                }
+            }
+            for (int r = 0; r < rules; r++) {
+                out.writeLong(store.getClassification(r));
+            }
+        }
+    }
+
+    /** Reads a file written by {@link #write(RuleStore, File)} back into a store. */
+    static RuleStore read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a columnar rule file of version " + VERSION);
+            }
+            List<String> labels = readStrings(in);
+            RuleStore store = new RuleStore(readStrings(in));
+            int rulesetCount = in.readInt();
+            String[] names = new String[rulesetCount];
+            String[] descriptions = new String[rulesetCount];
+            int[] firstRule = new int[rulesetCount + 1];
+            for (int i = 0; i < rulesetCount; i++) {
+                names[i] = readString(in);
+                descriptions[i] = readString(in);
+                firstRule[i] = in.readInt();
+            }
+            int rules = in.readInt();
+            firstRule[rulesetCount] = rules;
+
+            char[] text = new char[in.readInt()];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = in.readChar();
+            }
+            in.skipNBytes(4L * rules); // ruleset column, implied by firstRule
+            int[][] labelIds = new int[RuleStore.LABEL_FIELDS][rules];
+            for (int[] column : labelIds) {
+                for (int r = 0; r < rules; r++) column[r] = in.readInt();
+            }
+            int[][] starts = new int[RuleStore.TEXT_FIELDS][rules];
+            int[][] lengths = new int[RuleStore.TEXT_FIELDS][rules];
+            for (int field = 0; field < RuleStore.TEXT_FIELDS; field++) {
+                for (int r = 0; r < rules; r++) starts[field][r] = in.readInt();
+                for (int r = 0; r < rules; r++) lengths[field][r] = in.readInt();
+            }
+
+            for (int i = 0; i < rulesetCount; i++) {
+                List<RuleData> ruleList = new ArrayList<>(firstRule[i + 1] - firstRule[i]);
+                for (int r = firstRule[i]; r < firstRule[i + 1]; r++) {
+                    String[] texts = new String[RuleStore.TEXT_FIELDS];
+                    for (int field = 0; field < RuleStore.TEXT_FIELDS; field++) {
+                        texts[field] = lengths[field][r] < 0 ? null : new String(text, starts[field][r], lengths[field][r]);
+                    }
+                    String[] values = new String[RuleStore.LABEL_FIELDS];
+                    for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                        values[field] = labelIds[field][r] < 0 ? null : labels.get(labelIds[field][r]);
+                    }
+                    ruleList.add(new RuleData(texts[RuleStore.RULE_ID], texts[RuleStore.WHEN], texts[RuleStore.MESSAGE],
+                            values[RuleStore.SOURCE], values[RuleStore.TARGET], values[RuleStore.DOMAIN], values[RuleStore.CATEGORY]));
+                }
+                store.add(new ParsedRuleset(names[i], descriptions[i], ruleList));
+            }
+            // Classification comes last in the file, patch it into the rules added above
+            for (int r = 0; r < rules; r++) {
+                store.setClassification(r, in.readLong());
+            }
+            return store;
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
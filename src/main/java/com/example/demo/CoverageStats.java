@@ -0,0 +1,145 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rule counts by source/target pair, domain, category and condition provider type (java.referenced,
+ * builtin.filecontent, ... from the when block), collected during extract with stats=true and written to
+ * appcat-ruleset.stats.json. Every ruleset is counted into small partial maps on the thread that parsed it,
+ * then the partials are merged into concurrent counters, so parser threads only meet once per ruleset and
+ * distinct value, not once per rule.
+ * A rule with several values of a label (joined with ", " by extract) counts once for every value, once for
+ * every source/target combination and once for every distinct provider type; a missing value counts as "".
+ */
+final class CoverageStats {
+
+    static final String FILE = "appcat-ruleset.stats.json";
+
+    // Separates source and target in the pair keys, neither label value contains it
+    private static final char PAIR_SEPARATOR = '\n';
+
+    private final LongAdder rulesets = new LongAdder();
+    private final LongAdder rules = new LongAdder();
+    private final Map<String, LongAdder> pairs = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> domains = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> categories = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> providers = new ConcurrentHashMap<>();
+
+    /** Counts the rules of one ruleset. Safe to call from several parser threads at once. */
+    void add(ParsedRuleset ruleset) {
+        Map<String, long[]> rulesetPairs = new HashMap<>();
+        Map<String, long[]> rulesetDomains = new HashMap<>();
+        Map<String, long[]> rulesetCategories = new HashMap<>();
+        Map<String, long[]> rulesetProviders = new HashMap<>();
+        for (RuleData rule : ruleset.rules) {
+            for (String source : values(rule.source)) {
+                for (String target : values(rule.target)) {
+                    count(rulesetPairs, source + PAIR_SEPARATOR + target);
+                }
+            }
+            for (String domain : values(rule.domain)) {
+                count(rulesetDomains, domain);
+            }
+            for (String category : values(rule.category)) {
+                count(rulesetCategories, category);
+            }
+            for (String provider : values(rule.providers)) {
+                count(rulesetProviders, provider);
+            }
+        }
+        rulesets.increment();
+        rules.add(ruleset.rules.size());
+        merge(rulesetPairs, pairs);
+        merge(rulesetDomains, domains);
+        merge(rulesetCategories, categories);
+        merge(rulesetProviders, providers);
+    }
+
+    long getRulesetCount() {
+        return rulesets.sum();
+    }
+
+    long getRuleCount() {
+        return rules.sum();
+    }
+
+    /**
+     * Writes the counts as {"rulesets":..,"rules":..,"sourceTarget":[{"source":..,"target":..,"rules":..},..],
+     * "domain":{..},"category":{..},"provider":{..}}, every group ordered by descending count, then by value.
+     */
+    void write(File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("{\"rulesets\":" + getRulesetCount() + ",\"rules\":" + getRuleCount() + ",\n\"sourceTarget\":[");
+            List<Map.Entry<String, Long>> sortedPairs = sorted(pairs);
+            for (int i = 0; i < sortedPairs.size(); i++) {
+                String pair = sortedPairs.get(i).getKey();
+                int separator = pair.indexOf(PAIR_SEPARATOR);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write("{\"source\":");
+                Json.appendString(out, pair.substring(0, separator));
+                out.write(",\"target\":");
+                Json.appendString(out, pair.substring(separator + 1));
+                out.write(",\"rules\":" + sortedPairs.get(i).getValue() + "}");
+            }
+            out.write("],\n");
+            writeGroup(out, "domain", domains);
+            out.write(",\n");
+            writeGroup(out, "category", categories);
+            out.write(",\n");
+            writeGroup(out, "provider", providers);
+            out.write("}\n");
+        }
+        System.out.println("Coverage statistics of " + getRuleCount() + " rule(s) written to " + file.getPath());
+    }
+
+    private static void writeGroup(Writer out, String name, Map<String, LongAdder> counts) throws IOException {
+        Json.appendString(out, name);
+        out.write(":{");
+        List<Map.Entry<String, Long>> entries = sorted(counts);
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) out.write(',');
+            Json.appendString(out, entries.get(i).getKey());
+            out.write(":" + entries.get(i).getValue());
+        }
+        out.write('}');
+    }
+
+    private static List<Map.Entry<String, Long>> sorted(Map<String, LongAdder> counts) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.size());
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            entries.add(Map.entry(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return entries;
+    }
+
+    // The values of a label joined with ", " by extract, a single "" for none
+    private static String[] values(String joined) {
+        return joined == null || joined.isEmpty() ? new String[] {""} : joined.split(", ");
+    }
+
+    private static void count(Map<String, long[]> counts, String key) {
+        counts.computeIfAbsent(key, k -> new long[1])[0]++;
+    }
+
+    private static void merge(Map<String, long[]> partial, Map<String, LongAdder> counts) {
+        for (Map.Entry<String, long[]> entry : partial.entrySet()) {
+            counts.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue()[0]);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes all rules into one RFC 4180 CSV file (UTF-8), one row per rule. The first column is the
+ * ruleset name, followed by the extract columns and one Yes/No column per classifier.
+ */
+class CsvRuleStoreWriter implements RuleStoreWriter {
+
+    @Override
+    public String getFileName() {
+        return "appcat-ruleset.csv";
+    }
+
+    @Override
+    public void write(RuleStore store, File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writeField(out, "Ruleset");
+            for (String title : RulesetToExcel.RULE_COLUMNS) {
+                out.write(',');
+                writeField(out, title);
+            }
+            List<String> classifierTitles = store.getClassifierTitles();
+            for (String title : classifierTitles) {
+                out.write(',');
+                writeField(out, title);
+            }
+            out.write("\r\n");
+
+            for (int r = 0; r < store.getRuleCount(); r++) {
+                writeField(out, store.getRulesetName(store.getRuleset(r)));
+                out.write(',');
+                writeField(out, store.getText(r, RuleStore.RULE_ID));
+                out.write(',');
+                writeField(out, store.getText(r, RuleStore.WHEN));
+                out.write(',');
+                writeField(out, store.getText(r, RuleStore.MESSAGE));
+                for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                    out.write(',');
+                    writeField(out, store.getLabel(r, field));
+                }
+                long classification = store.getClassification(r);
+                for (int k = 0; k < classifierTitles.size(); k++) {
+                    out.write(',');
+                    out.write((classification & (1L << k)) != 0 ? "Yes" : "No");
+                }
+                out.write("\r\n");
+            }
+        }
+    }
+
+    // Quotes the value if it contains a separator, quote or line break; null is an empty field
+    static void writeField(Writer out, CharSequence value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.demo;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
@@ -14,17 +18,49 @@ import java.util.ArrayList;
 public class DemoApplication {
 
     private static String rulesetPath;
+    private static String basePath;
     private static String outputPath;
     private static List<String> filters;
     private static String action;
     // Define supported actions as static strings
     public static final String ACTION_EXTRACT = "extract";
     public static final String ACTION_ANALYZE_SPRING = "analyze-spring";
+    public static final String ACTION_WATCH = "watch";
+    public static final String ACTION_SERVE = "serve";
+    public static final String ACTION_SEARCH = "search";
+    public static final String ACTION_DIFF = "diff";
+    // Number of rows kept in memory per sheet when streaming=true
+    public static final int DEFAULT_ROW_WINDOW = 100;
+
+    private static boolean streaming;
+    private static int rowWindow = DEFAULT_ROW_WINDOW;
+    private static int threads = 1;
+    private static int ioThreads = ExtractOptions.DEFAULT_IO_THREADS;
+    private static long parseTimeoutMillis = ExtractOptions.DEFAULT_PARSE_TIMEOUT_MILLIS;
+    private static boolean incremental;
+    private static String classifiersPath;
+    private static boolean classify;
+    private static List<String> formats = List.of(RuleStoreWriter.FORMAT_XLSX);
+    private static long debounceMillis = RulesetWatcher.DEFAULT_DEBOUNCE_MILLIS;
+    private static String host = "127.0.0.1";
+    private static int port = RuleQueryServer.DEFAULT_PORT;
+    private static boolean index;
+    private static boolean stats;
+    private static String query;
+    private static int limit = 10;
+    private static boolean metrics;
+    private static ShardPolicy shardPolicy;
 
     public static void main(String[] args) {
         SpringApplication.run(DemoApplication.class, args);
     }
 
+    // The registry the extract and analyze phases record into, see RunMetrics
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return RunMetrics.registry();
+    }
+
     @Component
     public static class CliRunner implements CommandLineRunner {
         @Override
@@ -33,13 +69,15 @@ public class DemoApplication {
                 System.err.println("Error: Arguments are required");
                 System.err.println(
                         "Usage: java -jar demo.jar rulesetpath=<path> outputpath=<path> filters=<filter1,filter2,...> action=<"
-                                + ACTION_EXTRACT + "|" + ACTION_ANALYZE_SPRING + ">");
+                                + ACTION_EXTRACT + "|" + ACTION_ANALYZE_SPRING + "|" + ACTION_WATCH + "|" + ACTION_SERVE + "|" + ACTION_SEARCH + "|" + ACTION_DIFF + "> [basepath=<path> streaming=<true|false> rowwindow=<rows> threads=<n|auto> iothreads=<n> parsetimeout=<ms> incremental=<true|false> classify=<true|false> classifiers=<file> format=<xlsx,csv,jsonl,columnar> debounce=<ms> host=<address> port=<port> index=<true|false> stats=<true|false> query=<text> limit=<n> metrics=<true|false> shard=<group|rows:n|bytes:n>]");
                 System.exit(1);
             }
             for (String arg : args) {
                 System.out.println("Processing argument: " + arg);
                 if (arg.startsWith("rulesetpath=")) {
                     rulesetPath = arg.substring("rulesetpath=".length());
+                } else if (arg.startsWith("basepath=")) {
+                    basePath = arg.substring("basepath=".length());
                 } else if (arg.startsWith("outputpath=")) {
                     outputPath = arg.substring("outputpath=".length());
                 } else if (arg.startsWith("filters=")) {
@@ -53,27 +91,216 @@ public class DemoApplication {
                     }
                 } else if (arg.startsWith("action=")) {
                     action = arg.substring("action=".length());
+                } else if (arg.startsWith("streaming=")) {
+                    streaming = Boolean.parseBoolean(arg.substring("streaming=".length()).trim());
+                } else if (arg.startsWith("rowwindow=")) {
+                    try {
+                        rowWindow = Integer.parseInt(arg.substring("rowwindow=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: rowwindow must be a number: " + arg);
+                        System.exit(1);
+                    }
+                    if (rowWindow <= 0) {
+                        System.err.println("Error: rowwindow must be greater than 0: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("classifiers=")) {
+                    classifiersPath = arg.substring("classifiers=".length()).trim();
+                } else if (arg.startsWith("format=")) {
+                    List<String> formatList = new ArrayList<>();
+                    for (String format : arg.substring("format=".length()).split(",")) {
+                        format = format.trim().toLowerCase();
+                        if (!RuleStoreWriter.FORMATS.contains(format)) {
+                            System.err.println("Error: Unknown format '" + format + "'. Supported formats: " + RuleStoreWriter.FORMATS);
+                            System.exit(1);
+                        }
+                        if (!formatList.contains(format)) {
+                            formatList.add(format);
+                        }
+                    }
+                    formats = formatList;
+                } else if (arg.startsWith("shard=")) {
+                    try {
+                        shardPolicy = ShardPolicy.parse(arg.substring("shard=".length()));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Error: " + e.getMessage());
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("metrics=")) {
+                    metrics = Boolean.parseBoolean(arg.substring("metrics=".length()).trim());
+                } else if (arg.startsWith("index=")) {
+                    index = Boolean.parseBoolean(arg.substring("index=".length()).trim());
+                } else if (arg.startsWith("stats=")) {
+                    stats = Boolean.parseBoolean(arg.substring("stats=".length()).trim());
+                } else if (arg.startsWith("query=")) {
+                    query = arg.substring("query=".length());
+                } else if (arg.startsWith("limit=")) {
+                    try {
+                        limit = Integer.parseInt(arg.substring("limit=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: limit must be a number: " + arg);
+                        System.exit(1);
+                    }
+                    if (limit <= 0) {
+                        System.err.println("Error: limit must be greater than 0: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("host=")) {
+                    host = arg.substring("host=".length()).trim();
+                } else if (arg.startsWith("port=")) {
+                    try {
+                        port = Integer.parseInt(arg.substring("port=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: port must be a number: " + arg);
+                        System.exit(1);
+                    }
+                    if (port < 0 || port > 65535) {
+                        System.err.println("Error: port must be between 0 and 65535: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("debounce=")) {
+                    try {
+                        debounceMillis = Long.parseLong(arg.substring("debounce=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: debounce must be a number of milliseconds: " + arg);
+                        System.exit(1);
+                    }
+                    if (debounceMillis < 0) {
+                        System.err.println("Error: debounce must not be negative: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("classify=")) {
+                    classify = Boolean.parseBoolean(arg.substring("classify=".length()).trim());
+                } else if (arg.startsWith("incremental=")) {
+                    incremental = Boolean.parseBoolean(arg.substring("incremental=".length()).trim());
+                } else if (arg.startsWith("iothreads=")) {
+                    try {
+                        ioThreads = Integer.parseInt(arg.substring("iothreads=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: iothreads must be a number: " + arg);
+                        System.exit(1);
+                    }
+                    if (ioThreads < 0) {
+                        System.err.println("Error: iothreads must not be negative: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("parsetimeout=")) {
+                    try {
+                        parseTimeoutMillis = Long.parseLong(arg.substring("parsetimeout=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: parsetimeout must be a number of milliseconds: " + arg);
+                        System.exit(1);
+                    }
+                    if (parseTimeoutMillis < 0) {
+                        System.err.println("Error: parsetimeout must not be negative: " + arg);
+                        System.exit(1);
+                    }
+                } else if (arg.startsWith("threads=")) {
+                    String threadsStr = arg.substring("threads=".length()).trim();
+                    if ("auto".equalsIgnoreCase(threadsStr)) {
+                        threads = Runtime.getRuntime().availableProcessors();
+                    } else {
+                        try {
+                            threads = Integer.parseInt(threadsStr);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: threads must be a number or 'auto': " + arg);
+                            System.exit(1);
+                        }
+                        if (threads <= 0) {
+                            System.err.println("Error: threads must be greater than 0: " + arg);
+                            System.exit(1);
+                        }
+                    }
                 }
             }
             System.out.println("Parsed rulesetPath: " + rulesetPath);
+            System.out.println("Parsed basePath: " + basePath);
             System.out.println("Parsed outputPath: " + outputPath);
             System.out.println("Parsed filters: " + filters);
             System.out.println("Parsed action: " + action);
-            if (ACTION_EXTRACT.equalsIgnoreCase(action) && (rulesetPath == null || outputPath == null)) {
+            System.out.println("Parsed threads: " + threads);
+            System.out.println("Parsed iothreads: " + ioThreads);
+            System.out.println("Parsed parsetimeout: " + parseTimeoutMillis);
+            System.out.println("Parsed incremental: " + incremental);
+            System.out.println("Parsed classify: " + classify);
+            System.out.println("Parsed classifiers: " + classifiersPath);
+            System.out.println("Parsed formats: " + formats);
+            System.out.println("Parsed metrics: " + metrics);
+            System.out.println("Parsed shard: " + shardPolicy);
+            System.out.println("Parsed streaming: " + streaming + (streaming ? " (rowwindow=" + rowWindow + ")" : ""));
+            if ((ACTION_EXTRACT.equalsIgnoreCase(action) || ACTION_WATCH.equalsIgnoreCase(action))
+                    && (rulesetPath == null || outputPath == null)) {
                 System.err.println("Error: rulesetpath, outputpath are required");
                 System.err.println(
                         "Usage: java -jar demo.jar rulesetpath=<path> outputpath=<path> filters=<filter1,filter2,...> action=<"
-                                + ACTION_EXTRACT + ">");
+                                + ACTION_EXTRACT + "|" + ACTION_WATCH + ">");
                 System.exit(1);
             }
             if (ACTION_ANALYZE_SPRING.equalsIgnoreCase(action) && outputPath == null) {
                 System.err.println("Error: outputpath are required");
                 System.err.println("Usage: java -jar demo.jar outputpath=<path> filters=<filter1,filter2,...> action=<"
-                        + ACTION_ANALYZE_SPRING + ">");
+                        + ACTION_ANALYZE_SPRING + "> [streaming=<true|false> rowwindow=<rows> classifiers=<file>]");
                 System.exit(1);
             }
 
-            if (ACTION_EXTRACT.equalsIgnoreCase(action)) {
+            if (ACTION_DIFF.equalsIgnoreCase(action)) {
+                if (basePath == null || rulesetPath == null || outputPath == null) {
+                    System.err.println("Error: basepath, rulesetpath and outputpath are required");
+                    System.err.println("Usage: java -jar demo.jar basepath=<old rulesets or snapshot> rulesetpath=<new rulesets or snapshot> outputpath=<path> action="
+                            + ACTION_DIFF + " [format=<xlsx,csv> filters=<filter1,filter2,...> threads=<n|auto>]");
+                    System.exit(1);
+                }
+                File outputFolder = new File(outputPath);
+                if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+                    System.err.println("Error: Could not create output directory: " + outputPath);
+                    System.exit(1);
+                }
+                ExtractOptions options = new ExtractOptions()
+                        .setFilters(filters)
+                        .setRowWindow(streaming ? rowWindow : 0)
+                        .setThreads(threads)
+                        .setIoThreads(ioThreads)
+                        .setParseTimeoutMillis(parseTimeoutMillis)
+                        .setFormats(formats);
+                RunMetrics.startRun();
+                try {
+                    RulesetDiff.run(new File(basePath), new File(rulesetPath), outputFolder, options);
+                } catch (IOException | UncheckedIOException e) {
+                    System.err.println("Error: Could not diff " + basePath + " and " + rulesetPath + ": " + e.getMessage());
+                    System.exit(1);
+                }
+                finishRun(outputFolder);
+            } else if (ACTION_SEARCH.equalsIgnoreCase(action)) {
+                if (outputPath == null || query == null || query.isBlank()) {
+                    System.err.println("Error: outputpath and query are required");
+                    System.err.println("Usage: java -jar demo.jar outputpath=<path> action=" + ACTION_SEARCH
+                            + " query=<terms and \"phrases\"> [limit=<n>]");
+                    System.exit(1);
+                }
+                search(new File(outputPath, SearchIndexWriter.INDEX_DIR));
+            } else if (ACTION_SERVE.equalsIgnoreCase(action)) {
+                if (rulesetPath == null || !new File(rulesetPath).isDirectory()) {
+                    System.err.println("Error: rulesetpath must be a valid directory: " + rulesetPath);
+                    System.err.println("Usage: java -jar demo.jar rulesetpath=<path> action=" + ACTION_SERVE
+                            + " [host=<address> port=<port> filters=<filter1,filter2,...> threads=<n|auto> classify=<true|false> classifiers=<file>]");
+                    System.exit(1);
+                }
+                ExtractOptions options = new ExtractOptions()
+                        .setFilters(filters)
+                        .setThreads(threads)
+                        .setIoThreads(ioThreads)
+                        .setParseTimeoutMillis(parseTimeoutMillis)
+                        .setClassifier(classify || classifiersPath != null ? loadClassifier() : null);
+                RuleCatalog catalog = new RuleCatalog(RulesetToExcel.loadRuleStore(new File(rulesetPath), options, null));
+                try {
+                    RuleQueryServer server = new RuleQueryServer(catalog, host, port);
+                    Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+                    server.start();
+                } catch (IOException e) {
+                    System.err.println("Error: Could not start the HTTP server on " + host + ":" + port + ": " + e.getMessage());
+                    System.exit(1);
+                }
+            } else if (ACTION_EXTRACT.equalsIgnoreCase(action) || ACTION_WATCH.equalsIgnoreCase(action)) {
                 File rulesetFolder = new File(rulesetPath);
                 File outputFolder = new File(outputPath);
                 if (!rulesetFolder.exists() || !rulesetFolder.isDirectory()) {
@@ -97,7 +324,30 @@ public class DemoApplication {
                 } else {
                     System.out.println("No filters applied - processing all subdirectories");
                 }
-                RulesetToExcel.execute(rulesetPath, outputPath, filters);
+                ExtractOptions options = new ExtractOptions()
+                        .setFilters(filters)
+                        .setRowWindow(streaming ? rowWindow : 0)
+                        .setThreads(threads)
+                        .setIoThreads(ioThreads)
+                        .setParseTimeoutMillis(parseTimeoutMillis)
+                        .setIncremental(incremental)
+                        .setClassifier(classify || classifiersPath != null ? loadClassifier() : null)
+                        .setFormats(formats)
+                        .setIndex(index)
+                        .setStats(stats)
+                        .setShardPolicy(shardPolicy);
+                if (ACTION_WATCH.equalsIgnoreCase(action)) {
+                    try {
+                        new RulesetWatcher(rulesetPath, outputPath, options, debounceMillis, metrics).run();
+                    } catch (IOException e) {
+                        System.err.println("Error: Could not watch " + rulesetPath + ": " + e.getMessage());
+                        System.exit(1);
+                    }
+                } else {
+                    RunMetrics.startRun();
+                    RulesetToExcel.execute(rulesetPath, outputPath, options);
+                    finishRun(outputFolder);
+                }
             } else if (ACTION_ANALYZE_SPRING.equalsIgnoreCase(action)) {
                 File outputFolder = new File(outputPath);
                 if (!outputFolder.exists()) {
@@ -110,19 +360,70 @@ public class DemoApplication {
 
                 System.out.println("Output folder path: " + outputPath);
 
-                RulesetToExcel.recognizeSpringRules(outputPath);
+                RuleClassifier classifier = loadClassifier();
+                RunMetrics.startRun();
+                RulesetToExcel.recognizeSpringRules(outputPath, streaming ? rowWindow : 0, classifier);
+                finishRun(outputFolder);
             } else {
                 System.err.println("Error: Unknown action '" + action + "'. Supported actions: " + ACTION_EXTRACT + ", "
-                        + ACTION_ANALYZE_SPRING);
+                        + ACTION_ANALYZE_SPRING + ", " + ACTION_WATCH + ", " + ACTION_SERVE + ", " + ACTION_SEARCH + ", " + ACTION_DIFF);
                 System.exit(1);
             }
         }
     }
 
+    // Records the memory gauges and, with metrics=true, writes the metrics next to the output
+    private static void finishRun(File outputFolder) {
+        RunMetrics.finishRun(action);
+        if (metrics) {
+            try {
+                RunMetrics.write(outputFolder);
+            } catch (IOException e) {
+                System.err.println("Error: Could not write metrics to " + outputFolder + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void search(File indexDir) {
+        try {
+            long start = System.nanoTime();
+            SearchIndex searchIndex = SearchIndex.open(indexDir);
+            List<SearchIndex.Hit> hits = searchIndex.search(query, limit);
+            double millis = (System.nanoTime() - start) / 1e6;
+            for (SearchIndex.Hit hit : hits) {
+                System.out.printf("%8.3f  %s  %s  %s%n", hit.score, hit.getRuleset(), hit.getRuleId(), hit.getSnippet());
+            }
+            System.out.println(hits.size() + " hit(s) of " + searchIndex.getDocCount() + " rule(s) in " + String.format("%.2f", millis) + " ms");
+        } catch (IOException e) {
+            System.err.println("Error: Could not search " + indexDir + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Classifiers from classifiers=<file>, or the default spring classifier
+    private static RuleClassifier loadClassifier() {
+        if (classifiersPath == null || classifiersPath.isEmpty()) {
+            return RuleClassifier.defaults();
+        }
+        try {
+            RuleClassifier classifier = RuleClassifier.load(new File(classifiersPath));
+            System.out.println("Classifiers loaded: " + classifier.getNames());
+            return classifier;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: Could not load classifiers from " + classifiersPath + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
     public static String getRulesetPath() {
         return rulesetPath;
     }
 
+    public static String getBasePath() {
+        return basePath;
+    }
+
     public static String getOutputPath() {
         return outputPath;
     }
@@ -130,4 +431,76 @@ public class DemoApplication {
     public static List<String> getFilters() {
         return filters;
     }
+
+    public static boolean isStreaming() {
+        return streaming;
+    }
+
+    public static int getRowWindow() {
+        return rowWindow;
+    }
+
+    public static int getThreads() {
+        return threads;
+    }
+
+    public static int getIoThreads() {
+        return ioThreads;
+    }
+
+    public static long getParseTimeoutMillis() {
+        return parseTimeoutMillis;
+    }
+
+    public static boolean isIncremental() {
+        return incremental;
+    }
+
+    public static String getClassifiersPath() {
+        return classifiersPath;
+    }
+
+    public static boolean isClassify() {
+        return classify;
+    }
+
+    public static List<String> getFormats() {
+        return formats;
+    }
+
+    public static long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    public static String getHost() {
+        return host;
+    }
+
+    public static int getPort() {
+        return port;
+    }
+
+    public static boolean isIndex() {
+        return index;
+    }
+
+    public static boolean isStats() {
+        return stats;
+    }
+
+    public static String getQuery() {
+        return query;
+    }
+
+    public static int getLimit() {
+        return limit;
+    }
+
+    public static boolean isMetrics() {
+        return metrics;
+    }
+
+    public static ShardPolicy getShardPolicy() {
+        return shardPolicy;
+    }
 }
\ No newline at end of file
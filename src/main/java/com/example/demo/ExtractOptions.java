@@ -0,0 +1,156 @@
+package com.example.demo;
+
+import java.util.List;
+
+/**
+ * Options for action=extract, see {@link RulesetToExcel#execute(String, String, ExtractOptions)}.
+ * Setters return this so options can be chained.
+ */
+public class ExtractOptions {
+
+    public static final int DEFAULT_IO_THREADS = 4;
+    public static final long DEFAULT_PARSE_TIMEOUT_MILLIS = 10_000;
+
+    private List<String> filters;
+    private int rowWindow;
+    private int threads = 1;
+    private int ioThreads = DEFAULT_IO_THREADS;
+    private long parseTimeoutMillis = DEFAULT_PARSE_TIMEOUT_MILLIS;
+    private boolean incremental;
+    private RuleClassifier classifier;
+    private List<String> formats = List.of(RuleStoreWriter.FORMAT_XLSX);
+    private boolean index;
+    private boolean stats;
+    private ShardPolicy shardPolicy;
+
+    public List<String> getFilters() {
+        return filters;
+    }
+
+    /** Subdirectory names to process, null or empty for all subdirectories. */
+    public ExtractOptions setFilters(List<String> filters) {
+        this.filters = filters;
+        return this;
+    }
+
+    public int getRowWindow() {
+        return rowWindow;
+    }
+
+    /** Rows kept in memory per sheet; greater than 0 switches to the SXSSF streaming workbook. */
+    public ExtractOptions setRowWindow(int rowWindow) {
+        this.rowWindow = rowWindow;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Number of threads parsing ruleset directories. */
+    public ExtractOptions setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Number of threads reading ruleset files ahead of the parser, see {@link RulesetScanner.Prefetcher};
+     * 0 reads every file when it is parsed. Not used with incremental extract.
+     */
+    public ExtractOptions setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public long getParseTimeoutMillis() {
+        return parseTimeoutMillis;
+    }
+
+    /**
+     * Time budget for parsing one YAML file, 0 for none. A file that takes longer is skipped and listed in
+     * appcat-ruleset-errors.csv, like a malformed one.
+     */
+    public ExtractOptions setParseTimeoutMillis(long parseTimeoutMillis) {
+        this.parseTimeoutMillis = parseTimeoutMillis;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /** Reuse the rules cached in the manifest next to the output file for unchanged ruleset directories. */
+    public ExtractOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public RuleClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Classifies every rule while it is written and adds the classifier columns (e.g. "spring specific?"),
+     * so no analyze-spring pass over the written workbook is needed. Null for no classification.
+     */
+    public ExtractOptions setClassifier(RuleClassifier classifier) {
+        this.classifier = classifier;
+        return this;
+    }
+
+    public List<String> getFormats() {
+        return formats;
+    }
+
+    /**
+     * Output formats, see {@link RuleStoreWriter#FORMATS}. Default is xlsx only, which writes the workbook
+     * directly; any other combination collects the rules into a {@link RuleStore} and writes every format from it.
+     */
+    public ExtractOptions setFormats(List<String> formats) {
+        this.formats = formats;
+        return this;
+    }
+
+    public boolean isIndex() {
+        return index;
+    }
+
+    /**
+     * Also write the full-text search index (appcat-ruleset.index) next to the output files, see
+     * {@link SearchIndexWriter}. Only the segments of changed ruleset directories are rewritten.
+     */
+    public ExtractOptions setIndex(boolean index) {
+        this.index = index;
+        return this;
+    }
+
+    public boolean isStats() {
+        return stats;
+    }
+
+    /**
+     * Also count the rules by source/target pair, domain, category and condition provider type while they are
+     * parsed, and write the counts to appcat-ruleset.stats.json next to the output files, see {@link CoverageStats}.
+     */
+    public ExtractOptions setStats(boolean stats) {
+        this.stats = stats;
+        return this;
+    }
+
+    public ShardPolicy getShardPolicy() {
+        return shardPolicy;
+    }
+
+    /**
+     * Split the xlsx output into several workbooks plus an index workbook, see {@link ShardedXlsxRuleStoreWriter}.
+     * Null (the default) writes the single appcat-ruleset.xlsx.
+     */
+    public ExtractOptions setShardPolicy(ShardPolicy shardPolicy) {
+        this.shardPolicy = shardPolicy;
+        return this;
+    }
+}
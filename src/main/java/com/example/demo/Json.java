@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import java.io.IOException;
+
+/**
+ * Minimal JSON output helpers, enough for the flat records this tool writes.
+ */
+final class Json {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Json() {
+    }
+
+    /** Appends value as a JSON string literal, or null. */
+    static void appendString(Appendable out, CharSequence value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /** Same as {@link #appendString(Appendable, CharSequence)} for a StringBuilder, which cannot fail. */
+    static StringBuilder appendString(StringBuilder out, CharSequence value) {
+        try {
+            appendString((Appendable) out, value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes one JSON object per rule and line (JSON Lines, UTF-8):
+ * {"ruleset":..,"ruleID":..,"when":..,"description":..,"source":..,"target":..,"domain":..,"category":..}
+ * plus a "classifications" object mapping each classifier column title to true or false when the
+ * extract classified the rules.
+ */
+class JsonLinesRuleStoreWriter implements RuleStoreWriter {
+
+    private static final String[] LABEL_KEYS = {"source", "target", "domain", "category"};
+
+    @Override
+    public String getFileName() {
+        return "appcat-ruleset.jsonl";
+    }
+
+    @Override
+    public void write(RuleStore store, File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int r = 0; r < store.getRuleCount(); r++) {
+                appendRule(out, store, r);
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Appends rule r of the store as one JSON object, without a line break. */
+    static void appendRule(Appendable out, RuleStore store, int r) throws IOException {
+        List<String> classifierTitles = store.getClassifierTitles();
+        out.append("{\"ruleset\":");
+        Json.appendString(out, store.getRulesetName(store.getRuleset(r)));
+        out.append(",\"ruleID\":");
+        Json.appendString(out, store.getText(r, RuleStore.RULE_ID));
+        out.append(",\"when\":");
+        Json.appendString(out, store.getText(r, RuleStore.WHEN));
+        out.append(",\"description\":");
+        Json.appendString(out, store.getText(r, RuleStore.MESSAGE));
+        for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+            out.append(",\"" + LABEL_KEYS[field] + "\":");
+            Json.appendString(out, store.getLabel(r, field));
+        }
+        if (!classifierTitles.isEmpty()) {
+            out.append(",\"classifications\":{");
+            long classification = store.getClassification(r);
+            for (int k = 0; k < classifierTitles.size(); k++) {
+                if (k > 0) out.append(',');
+                Json.appendString(out, classifierTitles.get(k));
+                out.append((classification & (1L << k)) != 0 ? ":true" : ":false");
+            }
+            out.append('}');
+        }
+        out.append('}');
+    }
+}
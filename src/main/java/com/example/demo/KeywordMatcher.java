@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive multi-keyword matcher (Aho-Corasick automaton).
+ * All keywords are found in a single pass over the text, whatever their number. Characters are
+ * folded one at a time with Character.toLowerCase while scanning, so the text is never copied.
+ * Instances are immutable and can be shared between threads.
+ */
+final class KeywordMatcher {
+
+    /** Receives the id of every keyword found; returns false to stop scanning. */
+    interface MatchHandler {
+        boolean onMatch(int keywordId);
+    }
+
+    private static final int ASCII = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    // Transitions of every state: dense for ASCII, a map for everything else
+    private final int[][] asciiNext;
+    private final List<Map<Character, Integer>> otherNext;
+    private final int[] failure;
+    private final int[][] outputs;
+
+    /** keywords[i] gets id i. */
+    KeywordMatcher(List<String> keywords) {
+        List<int[]> ascii = new ArrayList<>();
+        List<Map<Character, Integer>> other = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        addState(ascii, other, out);
+
+        for (int id = 0; id < keywords.size(); id++) {
+            String keyword = keywords.get(id);
+            if (keyword == null || keyword.isEmpty()) {
+                throw new IllegalArgumentException("Empty keyword at index " + id);
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                int next = get(ascii, other, state, c);
+                if (next <= 0) {
+                    next = addState(ascii, other, out);
+                    put(ascii, other, state, c, next);
+                }
+                state = next;
+            }
+            out.get(state).add(id);
+        }
+
+        // Breadth-first over the trie: complete the goto function with failure transitions, so scanning
+        // needs exactly one lookup per character, and merge the outputs of each state's failure state.
+        int[] fail = new int[ascii.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ASCII; c++) {
+            int next = ascii.get(0)[c];
+            if (next > 0) queue.add(next);
+        }
+        queue.addAll(other.get(0).values());
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out.get(state).addAll(out.get(fail[state]));
+            for (int c = 0; c < ASCII; c++) {
+                int next = ascii.get(state)[c];
+                int failNext = ascii.get(fail[state])[c];
+                if (next > 0) {
+                    fail[next] = failNext;
+                    queue.add(next);
+                } else {
+                    ascii.get(state)[c] = failNext;
+                }
+            }
+            for (Map.Entry<Character, Integer> e : other.get(state).entrySet()) {
+                fail[e.getValue()] = follow(other, fail, fail[state], e.getKey());
+                queue.add(e.getValue());
+            }
+        }
+
+        asciiNext = ascii.toArray(new int[0][]);
+        otherNext = other;
+        failure = fail;
+        outputs = new int[out.size()][];
+        for (int s = 0; s < outputs.length; s++) {
+            outputs[s] = out.get(s).isEmpty() ? NO_OUTPUT : out.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /** Scans text once and reports every keyword occurrence to handler. */
+    void scan(CharSequence text, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            state = step(state, c);
+            for (int id : outputs[state]) {
+                if (!handler.onMatch(id)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        return c < ASCII ? asciiNext[state][c] : follow(otherNext, failure, state, c);
+    }
+
+    // Non-ASCII transitions are sparse, follow failure links until one exists
+    private static int follow(List<Map<Character, Integer>> other, int[] fail, int state, char c) {
+        while (true) {
+            Integer next = other.get(state).get(c);
+            if (next != null) return next;
+            if (state == 0) return 0;
+            state = fail[state];
+        }
+    }
+
+    private static int addState(List<int[]> ascii, List<Map<Character, Integer>> other, List<List<Integer>> out) {
+        ascii.add(new int[ASCII]);
+        other.add(new HashMap<>());
+        out.add(new ArrayList<>());
+        return ascii.size() - 1;
+    }
+
+    private static int get(List<int[]> ascii, List<Map<Character, Integer>> other, int state, char c) {
+        if (c < ASCII) return ascii.get(state)[c];
+        return other.get(state).getOrDefault(c, 0);
+    }
+
+    private static void put(List<int[]> ascii, List<Map<Character, Integer>> other, int state, char c, int next) {
+        if (c < ASCII) {
+            ascii.get(state)[c] = next;
+        } else {
+            other.get(state).put(c, next);
+        }
+    }
+}
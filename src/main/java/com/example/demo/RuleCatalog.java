@@ -0,0 +1,159 @@
+package com.example.demo;
+
+import java.util.*;
+
+/**
+ * Read-only rule catalog with inverted indexes for action=serve, built once from a {@link RuleStore}.
+ * Every indexed field maps a lower-cased term to the sorted ids of the rules having it:
+ * <ul>
+ *   <li>ruleset, ruleID: the whole value</li>
+ *   <li>source, target, domain, category: every single label value (extract joins repeated labels with ", ")</li>
+ *   <li>when: every token of the when condition, and for dotted names every package prefix,
+ *       so "javax.ejb" finds rules referring to javax.ejb.Stateless</li>
+ * </ul>
+ * A query intersects the posting lists of its terms, smallest first. Immutable, safe to share between threads.
+ */
+class RuleCatalog {
+
+    static final String FIELD_RULESET = "ruleset";
+    static final String FIELD_RULE_ID = "ruleID";
+    static final String FIELD_WHEN = "when";
+    // Label fields in RuleStore.SOURCE, TARGET, DOMAIN, CATEGORY order
+    static final List<String> LABEL_FIELDS = List.of("source", "target", "domain", "category");
+    static final List<String> FIELDS = List.of(FIELD_RULESET, FIELD_RULE_ID, "source", "target", "domain", "category", FIELD_WHEN);
+
+    private static final int[] NONE = new int[0];
+
+    private final RuleStore store;
+    private final Map<String, Map<String, int[]>> indexes = new HashMap<>();
+
+    RuleCatalog(RuleStore store) {
+        this.store = store;
+        Map<String, Map<String, IntList>> building = new HashMap<>();
+        for (String field : FIELDS) {
+            building.put(field, new HashMap<>());
+        }
+        for (int r = 0; r < store.getRuleCount(); r++) {
+            add(building.get(FIELD_RULESET), store.getRulesetName(store.getRuleset(r)), r);
+            add(building.get(FIELD_RULE_ID), store.getTextString(r, RuleStore.RULE_ID), r);
+            for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                String labels = store.getLabel(r, field);
+                if (labels != null) {
+                    for (String label : labels.split(",")) {
+                        add(building.get(LABEL_FIELDS.get(field)), label.trim(), r);
+                    }
+                }
+            }
+            indexWhen(building.get(FIELD_WHEN), store.getText(r, RuleStore.WHEN), r);
+        }
+        for (Map.Entry<String, Map<String, IntList>> field : building.entrySet()) {
+            Map<String, int[]> index = new HashMap<>(field.getValue().size() * 2);
+            field.getValue().forEach((term, ids) -> index.put(term, ids.toArray()));
+            indexes.put(field.getKey().toLowerCase(Locale.ROOT), index);
+        }
+    }
+
+    private static void indexWhen(Map<String, IntList> index, CharSequence when, int rule) {
+        if (when == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= when.length(); i++) {
+            boolean tokenChar = i < when.length() && isTokenChar(when.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                String token = when.subSequence(start, i).toString();
+                add(index, token, rule);
+                for (int dot = token.indexOf('.'); dot > 0; dot = token.indexOf('.', dot + 1)) {
+                    add(index, token.substring(0, dot), rule);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-' || c == '$' || c == '*';
+    }
+
+    private static void add(Map<String, IntList> index, String term, int rule) {
+        if (term == null || term.isEmpty()) {
+            return;
+        }
+        index.computeIfAbsent(term.toLowerCase(Locale.ROOT), t -> new IntList()).addOnce(rule);
+    }
+
+    RuleStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the ids of the rules matching all terms, in extract order. terms maps a field of
+     * {@link #FIELDS} (case-insensitive) to the values that must all match; no terms match every rule.
+     */
+    int[] query(Map<String, List<String>> terms) {
+        List<int[]> postings = new ArrayList<>();
+        for (Map.Entry<String, List<String>> term : terms.entrySet()) {
+            Map<String, int[]> index = indexes.get(term.getKey().toLowerCase(Locale.ROOT));
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown field '" + term.getKey() + "'. Supported fields: " + FIELDS);
+            }
+            for (String value : term.getValue()) {
+                postings.add(index.getOrDefault(value.trim().toLowerCase(Locale.ROOT), NONE));
+            }
+        }
+        if (postings.isEmpty()) {
+            int[] all = new int[store.getRuleCount()];
+            for (int r = 0; r < all.length; r++) all[r] = r;
+            return all;
+        }
+        postings.sort(Comparator.comparingInt(p -> p.length));
+        int[] result = postings.get(0);
+        for (int i = 1; i < postings.size() && result.length > 0; i++) {
+            result = intersect(result, postings.get(i));
+        }
+        return result;
+    }
+
+    /** Intersects two sorted id arrays, searching the longer one since query terms differ a lot in size. */
+    private static int[] intersect(int[] small, int[] large) {
+        int[] result = new int[small.length];
+        int count = 0;
+        int from = 0;
+        for (int id : small) {
+            int found = Arrays.binarySearch(large, from, large.length, id);
+            if (found >= 0) {
+                result[count++] = id;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+            if (from == large.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Growable int array for building posting lists. */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        // Rules are added in increasing order, so a repeated term of the same rule is the last value
+        void addOnce(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.demo;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tags rules with technology families, e.g. "spring specific?".
+ * A classifier has a name, the title of the column it writes, keywords that may appear in any column
+ * and keywords that only count in one named column. The keywords of all classifiers are compiled into
+ * one {@link KeywordMatcher}, so every cell is scanned once no matter how many classifiers there are.
+ * Classifiers are read from a YAML file, see classifiers.yaml on the classpath for the format and the
+ * default (spring) classifier:
+ * <pre>
+ * classifiers:
+ *   - name: spring
+ *     column: spring specific?
+ *     keywords: [spring]
+ *     columnKeywords:
+ *       When: ["properties|"]
+ * </pre>
+ * Instances are immutable and can be shared between threads.
+ */
+public class RuleClassifier {
+
+    static final String DEFAULT_CONFIG = "/classifiers.yaml";
+    // Classification results are returned as bits of a long
+    static final int MAX_CLASSIFIERS = 64;
+
+    private final List<String> names;
+    private final List<String> columnTitles;
+    // For every keyword id: index of its classifier and the column it is restricted to (null for any)
+    private final int[] keywordClassifier;
+    private final String[] keywordColumn;
+    private final KeywordMatcher matcher;
+
+    private RuleClassifier(List<String> names, List<String> columnTitles, List<String> keywords,
+                           List<Integer> keywordClassifier, List<String> keywordColumn) {
+        this.names = Collections.unmodifiableList(names);
+        this.columnTitles = Collections.unmodifiableList(columnTitles);
+        this.keywordClassifier = keywordClassifier.stream().mapToInt(Integer::intValue).toArray();
+        this.keywordColumn = keywordColumn.toArray(new String[0]);
+        this.matcher = new KeywordMatcher(keywords);
+    }
+
+    /** The classifiers in classifiers.yaml on the classpath: spring only, same as analyze-spring always did. */
+    public static RuleClassifier defaults() {
+        try (InputStream input = RuleClassifier.class.getResourceAsStream(DEFAULT_CONFIG)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing classpath resource " + DEFAULT_CONFIG);
+            }
+            return load(input, DEFAULT_CONFIG);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Loads classifiers from a YAML file, throws IllegalArgumentException if the file is not valid. */
+    public static RuleClassifier load(File configFile) throws IOException {
+        try (InputStream input = new FileInputStream(configFile)) {
+            return load(input, configFile.getPath());
+        }
+    }
+
+    private static RuleClassifier load(InputStream input, String source) {
+        Object data = new Yaml().load(input);
+        if (!(data instanceof Map) || !(((Map<?, ?>) data).get("classifiers") instanceof List)) {
+            throw new IllegalArgumentException(source + ": expected a 'classifiers' list");
+        }
+        List<?> entries = (List<?>) ((Map<?, ?>) data).get("classifiers");
+        if (entries.isEmpty() || entries.size() > MAX_CLASSIFIERS) {
+            throw new IllegalArgumentException(source + ": expected 1 to " + MAX_CLASSIFIERS + " classifiers");
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> columnTitles = new ArrayList<>();
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordClassifier = new ArrayList<>();
+        List<String> keywordColumn = new ArrayList<>();
+        for (Object entry : entries) {
+            if (!(entry instanceof Map)) {
+                throw new IllegalArgumentException(source + ": every classifier must be a map");
+            }
+            Map<?, ?> map = (Map<?, ?>) entry;
+            Object name = map.get("name");
+            if (!(name instanceof String) || ((String) name).isBlank()) {
+                throw new IllegalArgumentException(source + ": every classifier needs a name");
+            }
+            int index = names.size();
+            names.add((String) name);
+            Object column = map.get("column");
+            columnTitles.add(column instanceof String ? (String) column : name + " specific?");
+
+            for (String keyword : stringList(map.get("keywords"), source, name + ".keywords")) {
+                keywords.add(keyword);
+                keywordClassifier.add(index);
+                keywordColumn.add(null);
+            }
+            Object columnKeywords = map.get("columnKeywords");
+            if (columnKeywords instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) columnKeywords).entrySet()) {
+                    for (String keyword : stringList(e.getValue(), source, name + ".columnKeywords." + e.getKey())) {
+                        keywords.add(keyword);
+                        keywordClassifier.add(index);
+                        keywordColumn.add(String.valueOf(e.getKey()).trim());
+                    }
+                }
+            } else if (columnKeywords != null) {
+                throw new IllegalArgumentException(source + ": " + name + ".columnKeywords must be a map");
+            }
+        }
+        return new RuleClassifier(names, columnTitles, keywords, keywordClassifier, keywordColumn);
+    }
+
+    private static List<String> stringList(Object value, String source, String key) {
+        List<String> result = new ArrayList<>();
+        if (value == null) {
+            return result;
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(source + ": " + key + " must be a list");
+        }
+        for (Object item : (List<?>) value) {
+            if (item == null || String.valueOf(item).isEmpty()) {
+                throw new IllegalArgumentException(source + ": " + key + " contains an empty keyword");
+            }
+            result.add(String.valueOf(item));
+        }
+        return result;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /** Titles of the output columns, one per classifier, e.g. "spring specific?". */
+    public List<String> getColumnTitles() {
+        return columnTitles;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Resolves the column restrictions of all keywords against the title row of one sheet.
+     * Columns holding classifier results are excluded from matching.
+     */
+    SheetClassifier forColumns(List<String> titles) {
+        int[] columns = new int[keywordColumn.length];
+        for (int k = 0; k < columns.length; k++) {
+            // -1: any column, -2: the column is not in this sheet so the keyword never matches
+            columns[k] = keywordColumn[k] == null ? -1 : -2;
+            for (int c = 0; keywordColumn[k] != null && c < titles.size(); c++) {
+                if (titles.get(c) != null && keywordColumn[k].equalsIgnoreCase(titles.get(c).trim())) {
+                    columns[k] = c;
+                    break;
+                }
+            }
+        }
+        boolean[] skip = new boolean[titles.size()];
+        for (int c = 0; c < titles.size(); c++) {
+            String title = titles.get(c) == null ? "" : titles.get(c).trim();
+            for (String columnTitle : columnTitles) {
+                if (columnTitle.equalsIgnoreCase(title)) {
+                    skip[c] = true;
+                }
+            }
+        }
+        return new SheetClassifier(columns, skip);
+    }
+
+    /** Classifier bound to the column layout of one sheet. Not thread-safe. */
+    class SheetClassifier {
+
+        private final int[] columns;
+        private final boolean[] skip;
+        private final long all = size() == 64 ? -1L : (1L << size()) - 1;
+        private long result;
+        private int column;
+
+        private final KeywordMatcher.MatchHandler handler;
+
+        private SheetClassifier(int[] columns, boolean[] skip) {
+            this.columns = columns;
+            this.skip = skip;
+            this.handler = keywordId -> {
+                int keywordColumnIndex = columns[keywordId];
+                if (keywordColumnIndex == -1 || keywordColumnIndex == column) {
+                    result |= 1L << keywordClassifier[keywordId];
+                }
+                // Stop scanning once every classifier matched
+                return result != all;
+            };
+        }
+
+        /** Returns bit i set if classifier i matches the cell texts of a row. */
+        long classify(List<String> cellTexts) {
+            result = 0;
+            for (int c = 0; c < cellTexts.size() && result != all; c++) {
+                scan(c, cellTexts.get(c));
+            }
+            return result;
+        }
+
+        /**
+         * Same as {@link #classify(List)} on the fields of a rule, without building the row first.
+         * The sheet classifier must be created for {@link RulesetToExcel#RULE_COLUMNS}.
+         */
+        long classify(RulesetToExcel.RuleData rule) {
+            result = 0;
+            scan(0, rule.ruleId);
+            scan(1, rule.when);
+            scan(2, rule.mergedDescription);
+            scan(3, rule.source);
+            scan(4, rule.target);
+            scan(5, rule.domain);
+            scan(6, rule.category);
+            return result;
+        }
+
+        /** Titles of the result columns, one per classifier. */
+        List<String> getColumnTitles() {
+            return columnTitles;
+        }
+
+        private void scan(int col, String text) {
+            if (result != all && text != null && !(col < skip.length && skip[col])) {
+                column = col;
+                matcher.scan(text, handler);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP query API for action=serve, answered from a {@link RuleCatalog} held in memory:
+ * <pre>
+ * GET /rules?target=quarkus&amp;domain=cloud&amp;offset=0&amp;limit=50
+ *     {"total":..,"offset":..,"limit":..,"rules":[{"ruleset":..,"ruleID":..,...}]}
+ * GET /rulesets
+ *     [{"name":..,"description":..,"rules":..}]
+ * </pre>
+ * Filters are the fields of {@link RuleCatalog#FIELDS}, matched case-insensitively; repeated or
+ * multiple filters must all match. Uses the JDK's built-in HTTP server, so no servlet container
+ * is started for the other actions.
+ */
+class RuleQueryServer {
+
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private final RuleCatalog catalog;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    RuleQueryServer(RuleCatalog catalog, String host, int port) throws IOException {
+        this.catalog = catalog;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.createContext("/rules", exchange -> handle(exchange, "/rules", this::rules));
+        server.createContext("/rulesets", exchange -> handle(exchange, "/rulesets", this::rulesets));
+    }
+
+    void start() {
+        server.start();
+        InetSocketAddress address = server.getAddress();
+        System.out.println("Serving " + catalog.getStore().getRuleCount() + " rule(s) on http://"
+                + address.getHostString() + ":" + address.getPort() + "/rules");
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void respond(Map<String, List<String>> params, StringBuilder body);
+    }
+
+    // A context matches every path it is a prefix of, so /rules/x or /rulesx must be answered here
+    private void handle(HttpExchange exchange, String path, Handler handler) throws IOException {
+        try (exchange) {
+            int status = 200;
+            StringBuilder body = new StringBuilder(4096);
+            if (!path.equals(exchange.getRequestURI().getPath())) {
+                status = 404;
+                error(body, "Not found: " + exchange.getRequestURI().getPath());
+            } else if (!"GET".equals(exchange.getRequestMethod())) {
+                status = 405;
+                error(body, "Only GET is supported");
+            } else {
+                try {
+                    handler.respond(parseQuery(exchange.getRequestURI().getRawQuery()), body);
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                    body.setLength(0);
+                    error(body, e.getMessage());
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    status = 500;
+                    body.setLength(0);
+                    error(body, "Internal error");
+                }
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private void rules(Map<String, List<String>> params, StringBuilder body) {
+        int offset = intParam(params.remove("offset"), 0, "offset");
+        int limit = Math.min(intParam(params.remove("limit"), DEFAULT_LIMIT, "limit"), MAX_LIMIT);
+        int[] ids = catalog.query(params);
+
+        body.append("{\"total\":").append(ids.length)
+                .append(",\"offset\":").append(offset)
+                .append(",\"limit\":").append(limit)
+                .append(",\"rules\":[");
+        RuleStore store = catalog.getStore();
+        for (int i = offset; i < ids.length && i - offset < limit; i++) {
+            if (i > offset) body.append(',');
+            try {
+                JsonLinesRuleStoreWriter.appendRule(body, store, ids[i]);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        body.append("]}");
+    }
+
+    private void rulesets(Map<String, List<String>> params, StringBuilder body) {
+        RuleStore store = catalog.getStore();
+        body.append('[');
+        for (int i = 0; i < store.getRulesetCount(); i++) {
+            if (i > 0) body.append(',');
+            body.append("{\"name\":");
+            Json.appendString(body, store.getRulesetName(i));
+            body.append(",\"description\":");
+            Json.appendString(body, store.getRulesetDescription(i));
+            body.append(",\"rules\":").append(store.getFirstRule(i + 1) - store.getFirstRule(i)).append('}');
+        }
+        body.append(']');
+    }
+
+    private static void error(StringBuilder body, String message) {
+        body.append("{\"error\":");
+        Json.appendString(body, message);
+        body.append('}');
+    }
+
+    private static int intParam(List<String> values, int defaultValue, String name) {
+        if (values == null || values.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(values.get(values.size() - 1).trim());
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must not be negative");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+}
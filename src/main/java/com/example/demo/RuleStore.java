@@ -0,0 +1,218 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented, in-memory store of extracted rules, the input of the {@link RuleStoreWriter}s.
+ * Label values (source, target, domain, category) repeat across thousands of rules, so each distinct
+ * value is stored once and rules refer to it by id. RuleID, when and description/message text of all
+ * rules is appended to one shared char buffer and rules keep offsets into it, instead of one String
+ * object per field. Rules are numbered 0..getRuleCount()-1 in extract order; each ruleset covers a
+ * contiguous range of them. Filled by one thread, read-only afterwards.
+ */
+class RuleStore {
+
+    // Text fields
+    static final int RULE_ID = 0;
+    static final int WHEN = 1;
+    static final int MESSAGE = 2;
+    static final int TEXT_FIELDS = 3;
+
+    // Label fields
+    static final int SOURCE = 0;
+    static final int TARGET = 1;
+    static final int DOMAIN = 2;
+    static final int CATEGORY = 3;
+    static final int LABEL_FIELDS = 4;
+
+    private final List<String> classifierTitles;
+
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+
+    private char[] text = new char[64 * 1024];
+    private int textLength;
+
+    private final List<String> rulesetNames = new ArrayList<>();
+    private final List<String> rulesetDescriptions = new ArrayList<>();
+    private int[] rulesetFirstRule = new int[16];
+
+    private int ruleCount;
+    private int[] ruleRuleset = new int[1024];
+    private int[] ruleLabels = new int[1024 * LABEL_FIELDS];
+    // Start and length of every text field in text, length -1 for null
+    private int[] textStart = new int[1024 * TEXT_FIELDS];
+    private int[] textLen = new int[1024 * TEXT_FIELDS];
+    private long[] classification = new long[1024];
+
+    /** classifierTitles: titles of the classification columns, bit k of {@link #getClassification(int)}. */
+    RuleStore(List<String> classifierTitles) {
+        this.classifierTitles = Collections.unmodifiableList(new ArrayList<>(classifierTitles));
+    }
+
+    /** Appends a ruleset and its rules, including their classification bits. */
+    void add(ParsedRuleset ruleset) {
+        int index = rulesetNames.size();
+        rulesetNames.add(ruleset.name);
+        rulesetDescriptions.add(ruleset.description);
+        if (index + 1 >= rulesetFirstRule.length) {
+            rulesetFirstRule = Arrays.copyOf(rulesetFirstRule, rulesetFirstRule.length * 2);
+        }
+        rulesetFirstRule[index] = ruleCount;
+        for (RuleData rule : ruleset.rules) {
+            addRule(index, rule);
+        }
+        rulesetFirstRule[index + 1] = ruleCount;
+    }
+
+    private void addRule(int ruleset, RuleData rule) {
+        if (ruleCount == ruleRuleset.length) {
+            int capacity = ruleCount * 2;
+            ruleRuleset = Arrays.copyOf(ruleRuleset, capacity);
+            ruleLabels = Arrays.copyOf(ruleLabels, capacity * LABEL_FIELDS);
+            textStart = Arrays.copyOf(textStart, capacity * TEXT_FIELDS);
+            textLen = Arrays.copyOf(textLen, capacity * TEXT_FIELDS);
+            classification = Arrays.copyOf(classification, capacity);
+        }
+        int r = ruleCount++;
+        ruleRuleset[r] = ruleset;
+        appendText(r, RULE_ID, rule.ruleId);
+        appendText(r, WHEN, rule.when);
+        appendText(r, MESSAGE, rule.mergedDescription);
+        ruleLabels[r * LABEL_FIELDS + SOURCE] = labelId(rule.source);
+        ruleLabels[r * LABEL_FIELDS + TARGET] = labelId(rule.target);
+        ruleLabels[r * LABEL_FIELDS + DOMAIN] = labelId(rule.domain);
+        ruleLabels[r * LABEL_FIELDS + CATEGORY] = labelId(rule.category);
+        classification[r] = rule.classification;
+    }
+
+    private void appendText(int rule, int field, String value) {
+        int slot = rule * TEXT_FIELDS + field;
+        if (value == null) {
+            textStart[slot] = textLength;
+            textLen[slot] = -1;
+            return;
+        }
+        if (textLength + value.length() > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + value.length()));
+        }
+        value.getChars(0, value.length(), text, textLength);
+        textStart[slot] = textLength;
+        textLen[slot] = value.length();
+        textLength += value.length();
+    }
+
+    private int labelId(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = labelIds.get(value);
+        if (id == null) {
+            id = labels.size();
+            labels.add(value);
+            labelIds.put(value, id);
+        }
+        return id;
+    }
+
+    List<String> getClassifierTitles() {
+        return classifierTitles;
+    }
+
+    int getRulesetCount() {
+        return rulesetNames.size();
+    }
+
+    String getRulesetName(int ruleset) {
+        return rulesetNames.get(ruleset);
+    }
+
+    String getRulesetDescription(int ruleset) {
+        return rulesetDescriptions.get(ruleset);
+    }
+
+    /** First rule of a ruleset; its rules are getFirstRule(ruleset) to getFirstRule(ruleset + 1) - 1. */
+    int getFirstRule(int ruleset) {
+        return rulesetFirstRule[ruleset];
+    }
+
+    int getRuleCount() {
+        return ruleCount;
+    }
+
+    int getRuleset(int rule) {
+        return ruleRuleset[rule];
+    }
+
+    /** Zero-copy view of a text field (RULE_ID, WHEN, MESSAGE), null if the rule has no value. */
+    CharSequence getText(int rule, int field) {
+        int slot = rule * TEXT_FIELDS + field;
+        return textLen[slot] < 0 ? null : CharBuffer.wrap(text, textStart[slot], textLen[slot]);
+    }
+
+    /** Same as {@link #getText(int, int)} as a String. */
+    String getTextString(int rule, int field) {
+        int slot = rule * TEXT_FIELDS + field;
+        return textLen[slot] < 0 ? null : new String(text, textStart[slot], textLen[slot]);
+    }
+
+    /** Label field (SOURCE, TARGET, DOMAIN, CATEGORY); the same String instance for equal values. */
+    String getLabel(int rule, int field) {
+        int id = ruleLabels[rule * LABEL_FIELDS + field];
+        return id < 0 ? null : labels.get(id);
+    }
+
+    long getClassification(int rule) {
+        return classification[rule];
+    }
+
+    void setClassification(int rule, long bits) {
+        classification[rule] = bits;
+    }
+
+    /** Materializes one ruleset as ParsedRuleset, for writers that work on RuleData. */
+    ParsedRuleset toParsedRuleset(int ruleset) {
+        List<RuleData> rules = new ArrayList<>();
+        for (int r = getFirstRule(ruleset); r < getFirstRule(ruleset + 1); r++) {
+            RuleData rule = new RuleData(getTextString(r, RULE_ID), getTextString(r, WHEN), getTextString(r, MESSAGE),
+                    getLabel(r, SOURCE), getLabel(r, TARGET), getLabel(r, DOMAIN), getLabel(r, CATEGORY));
+            rule.classification = classification[r];
+            rules.add(rule);
+        }
+        return new ParsedRuleset(getRulesetName(ruleset), getRulesetDescription(ruleset), rules);
+    }
+
+    // Raw access for the columnar writer
+    List<String> getLabels() {
+        return labels;
+    }
+
+    char[] getTextBuffer() {
+        return text;
+    }
+
+    int getTextLength() {
+        return textLength;
+    }
+
+    int getLabelId(int rule, int field) {
+        return ruleLabels[rule * LABEL_FIELDS + field];
+    }
+
+    int getTextStart(int rule, int field) {
+        return textStart[rule * TEXT_FIELDS + field];
+    }
+
+    int getTextLength(int rule, int field) {
+        return textLen[rule * TEXT_FIELDS + field];
+    }
+}
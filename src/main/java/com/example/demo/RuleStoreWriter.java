@@ -0,0 +1,41 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a {@link RuleStore} to one output file in one format.
+ * Selected with the format=&lt;format1,format2,...&gt; option of action=extract, see {@link #forFormat}.
+ */
+interface RuleStoreWriter {
+
+    String FORMAT_XLSX = "xlsx";
+    String FORMAT_CSV = "csv";
+    String FORMAT_JSONL = "jsonl";
+    String FORMAT_COLUMNAR = "columnar";
+    List<String> FORMATS = List.of(FORMAT_XLSX, FORMAT_CSV, FORMAT_JSONL, FORMAT_COLUMNAR);
+
+    /** Name of the file written into the output directory, e.g. appcat-ruleset.csv. */
+    String getFileName();
+
+    void write(RuleStore store, File file) throws IOException;
+
+    /** Returns the writer for a format name, throws IllegalArgumentException for unknown formats. */
+    static RuleStoreWriter forFormat(String format, ExtractOptions options) {
+        switch (format.trim().toLowerCase()) {
+            case FORMAT_XLSX:
+                return options.getShardPolicy() != null
+                        ? new ShardedXlsxRuleStoreWriter(options.getRowWindow(), options.getShardPolicy())
+                        : new XlsxRuleStoreWriter(options.getRowWindow());
+            case FORMAT_CSV:
+                return new CsvRuleStoreWriter();
+            case FORMAT_JSONL:
+                return new JsonLinesRuleStoreWriter();
+            case FORMAT_COLUMNAR:
+                return new ColumnarRuleStoreWriter();
+            default:
+                throw new IllegalArgumentException("Unknown format '" + format + "'. Supported formats: " + FORMATS);
+        }
+    }
+}
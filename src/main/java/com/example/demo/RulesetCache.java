@@ -0,0 +1,393 @@
+package com.example.demo;
+
+import com.example.demo.RulesetScanner.Contents;
+import com.example.demo.RulesetScanner.RulesetDirectory;
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Manifest for incremental extract (incremental=true), stored next to the output workbook.
+ * For every ruleset directory it records name, size, modification time and SHA-256 hash of each
+ * YAML file, together with the rules extracted from those files. A directory whose files are
+ * unchanged is served from the manifest instead of being parsed again. Sizes and modification times
+ * come from the {@link RulesetScanner} walk; a file is only hashed when they moved, from the bytes the
+ * {@link RulesetScanner.Prefetcher} read if it read them.
+ * Every directory also records whether the run that wrote the manifest visited it, and whether its rules
+ * may be reused: a ruleset with files that failed to parse is stored as extracted, for
+ * {@link #readRuleStore(File)}, but parsed again by the next run. The visited entries are the snapshot of
+ * that run's extract; entries of deleted or filtered-out directories are only kept for later runs.
+ * resolve() may be called from several parser threads at once.
+ */
+class RulesetCache {
+
+    static final String MANIFEST_FILE = "appcat-ruleset.manifest";
+    private static final int MAGIC = 0x41435253;
+    // Version 2 added the condition providers of every rule, version 3 the visited and reusable flags
+    private static final int VERSION = 3;
+    private static final int VISITED = 1;
+    private static final int REUSABLE = 2;
+
+    private final String rootPath;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    private RulesetCache(String rootPath, Map<String, Entry> previous) {
+        this.rootPath = rootPath;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the manifest for rootDir. A missing or unreadable manifest, or one written for another
+     * ruleset root, gives an empty cache so every directory is parsed.
+     */
+    static RulesetCache load(File manifestFile, File rootDir) {
+        String rootPath = rootDir.getAbsolutePath();
+        Map<String, Entry> entries = new HashMap<>();
+        if (manifestFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+                // Rules of version 1 lack their condition providers, parse them again
+                int version = in.readInt() == MAGIC ? in.readInt() : 0;
+                if (version >= 2 && version <= VERSION && rootPath.equals(readString(in))) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String dirName = readString(in);
+                        int flags = readFlags(in, version);
+                        entries.put(dirName, readEntry(in, version, (flags & REUSABLE) != 0));
+                    }
+                } else {
+                    System.out.println("Manifest " + manifestFile + " does not match " + rootPath + ", parsing all rulesets");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable manifest " + manifestFile + ": " + e);
+                entries.clear();
+            }
+        }
+        return new RulesetCache(rootPath, entries);
+    }
+
+    /**
+     * Reads the rules of the directories the writing run visited into a store, in directory name order, for
+     * action=diff on an earlier extract: the rulesets that extract wrote, not those of deleted or filtered-out
+     * directories. Manifests before version 3 do not record visits, all their directories are read.
+     * Throws IOException if the file is not a manifest.
+     */
+    static RuleStore readRuleStore(File manifestFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : 0;
+            if (version < 1 || version > VERSION) {
+                throw new IOException(manifestFile + " is not a manifest of version 1 to " + VERSION);
+            }
+            readString(in);
+            RuleStore store = new RuleStore(List.of());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                readString(in);
+                int flags = readFlags(in, version);
+                Entry entry = readEntry(in, version, (flags & REUSABLE) != 0);
+                if ((flags & VISITED) != 0 && entry.ruleset != null && !entry.ruleset.isFailed()) {
+                    store.add(entry.ruleset);
+                }
+            }
+            return store;
+        }
+    }
+
+    static boolean isManifest(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether the files of subDir have to be read: false if it has a reusable entry whose files all still have
+     * the recorded size and modification time, so {@link #resolve} serves it without hashing any file.
+     */
+    boolean needsRead(RulesetDirectory subDir) {
+        Entry old = previous.get(subDir.dir.getName());
+        if (old == null || !old.reusable) {
+            return true;
+        }
+        List<Path> files = sortedFiles(subDir);
+        if (files.size() != old.files.length) {
+            return true;
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            BasicFileAttributes attrs = subDir.getAttributes(file);
+            FileStamp stamp = old.files[i];
+            if (!stamp.name.equals(file.getFileName().toString()) || stamp.size != attrs.size()
+                    || stamp.modified != attrs.lastModifiedTime().toMillis()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cached rules of subDir if its YAML files did not change since the manifest was
+     * written, otherwise parses the directory with parser and records the result.
+     */
+    ParsedRuleset resolve(RulesetDirectory subDir, Function<RulesetDirectory, ParsedRuleset> parser) {
+        return resolve(subDir, null, parser);
+    }
+
+    /** Same as {@link #resolve(RulesetDirectory, Function)}, hashing files from contents where it holds them. */
+    ParsedRuleset resolve(RulesetDirectory subDir, Contents contents, Function<RulesetDirectory, ParsedRuleset> parser) {
+        String dirName = subDir.dir.getName();
+        Entry old = previous.get(dirName);
+        FileStamp[] stamps = stampFiles(subDir, contents, old);
+        if (old != null && old.reusable && Arrays.equals(old.files, stamps)) {
+            reused.incrementAndGet();
+            current.put(dirName, new Entry(stamps, old.ruleset, true));
+            return old.ruleset;
+        }
+        ParsedRuleset ruleset = parser.apply(subDir);
+        parsed.incrementAndGet();
+        // A ruleset with files that failed to parse is not reused, so the next run parses and reports them again
+        current.put(dirName, new Entry(stamps, ruleset, ruleset == null || ruleset.errors.isEmpty()));
+        return ruleset;
+    }
+
+    int getReusedCount() {
+        return reused.get();
+    }
+
+    int getParsedCount() {
+        return parsed.get();
+    }
+
+    /**
+     * Writes the manifest. Entries of directories that were not visited in this run (for example
+     * because of filters) are kept as they were, but no longer marked visited.
+     */
+    void save(File manifestFile) throws IOException {
+        Map<String, Entry> merged = new TreeMap<>(previous);
+        merged.putAll(current);
+        File tmpFile = new File(manifestFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, rootPath);
+            out.writeInt(merged.size());
+            for (Map.Entry<String, Entry> e : merged.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeByte((current.containsKey(e.getKey()) ? VISITED : 0) | (e.getValue().reusable ? REUSABLE : 0));
+                writeEntry(out, e.getValue());
+            }
+        }
+        Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // The YAML files of a directory in file name order, the order of the stamps in the manifest
+    private static List<Path> sortedFiles(RulesetDirectory subDir) {
+        List<Path> files = subDir.getFiles();
+        files.sort(Comparator.comparing(file -> file.getFileName().toString()));
+        return files;
+    }
+
+    private static FileStamp[] stampFiles(RulesetDirectory subDir, Contents contents, Entry old) {
+        Map<Path, byte[]> read = new HashMap<>();
+        if (contents != null) {
+            List<Path> files = subDir.getFiles();
+            List<byte[]> bytes = contents.getFiles();
+            for (int i = 0; i < files.size(); i++) {
+                read.put(files.get(i), bytes.get(i));
+            }
+        }
+        Map<String, FileStamp> oldStamps = new HashMap<>();
+        if (old != null) {
+            for (FileStamp stamp : old.files) {
+                oldStamps.put(stamp.name, stamp);
+            }
+        }
+        List<Path> files = sortedFiles(subDir);
+        FileStamp[] stamps = new FileStamp[files.size()];
+        for (int i = 0; i < stamps.length; i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            BasicFileAttributes attrs = subDir.getAttributes(file);
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            FileStamp oldStamp = oldStamps.get(name);
+            // Only hash the content when size or modification time moved
+            byte[] hash;
+            if (oldStamp != null && oldStamp.size == size && oldStamp.modified == modified) {
+                hash = oldStamp.hash;
+            } else if (read.get(file) != null) {
+                hash = sha256().digest(read.get(file));
+            } else {
+                hash = hashFile(file);
+            }
+            stamps[i] = new FileStamp(name, size, modified, hash);
+        }
+        return stamps;
+    }
+
+    private static byte[] hashFile(Path file) {
+        try (InputStream input = Files.newInputStream(file)) {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            // An unreadable file never matches, so the directory is parsed and reports the error
+            return new byte[0];
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Manifests before version 3 only held visited, reusable entries
+    private static int readFlags(DataInputStream in, int version) throws IOException {
+        return version >= 3 ? in.readUnsignedByte() : VISITED | REUSABLE;
+    }
+
+    private static Entry readEntry(DataInputStream in, int version, boolean reusable) throws IOException {
+        FileStamp[] files = new FileStamp[in.readInt()];
+        for (int i = 0; i < files.length; i++) {
+            String name = readString(in);
+            long size = in.readLong();
+            long modified = in.readLong();
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            files[i] = new FileStamp(name, size, modified, hash);
+        }
+        ParsedRuleset ruleset = null;
+        if (in.readBoolean()) {
+            String name = readString(in);
+            String description = readString(in);
+            int ruleCount = in.readInt();
+            List<RuleData> rules = new ArrayList<>(ruleCount);
+            for (int i = 0; i < ruleCount; i++) {
+                RuleData rule = new RuleData(readString(in), readString(in), readString(in), readString(in),
+                        readString(in), readString(in), readString(in));
+                if (version >= 2) {
+                    rule.providers = readString(in);
+                }
+                rules.add(rule);
+            }
+            ruleset = new ParsedRuleset(name, description, rules);
+        }
+        return new Entry(files, ruleset, reusable);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(entry.files.length);
+        for (FileStamp stamp : entry.files) {
+            writeString(out, stamp.name);
+            out.writeLong(stamp.size);
+            out.writeLong(stamp.modified);
+            out.writeInt(stamp.hash.length);
+            out.write(stamp.hash);
+        }
+        out.writeBoolean(entry.ruleset != null);
+        if (entry.ruleset != null) {
+            writeString(out, entry.ruleset.name);
+            writeString(out, entry.ruleset.description);
+            out.writeInt(entry.ruleset.rules.size());
+            for (RuleData rule : entry.ruleset.rules) {
+                writeString(out, rule.ruleId);
+                writeString(out, rule.when);
+                writeString(out, rule.mergedDescription);
+                writeString(out, rule.source);
+                writeString(out, rule.target);
+                writeString(out, rule.domain);
+                writeString(out, rule.category);
+                writeString(out, rule.providers);
+            }
+        }
+    }
+
+    // Length-prefixed UTF-8, -1 for null. DataOutputStream.writeUTF is limited to 64KB.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        final FileStamp[] files;
+        final ParsedRuleset ruleset;
+        final boolean reusable;
+
+        Entry(FileStamp[] files, ParsedRuleset ruleset, boolean reusable) {
+            this.files = files;
+            this.ruleset = ruleset;
+            this.reusable = reusable;
+        }
+    }
+
+    private static class FileStamp {
+        final String name;
+        final long size;
+        final long modified;
+        final byte[] hash;
+
+        FileStamp(String name, long size, long modified, byte[] hash) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        // Modification time is left out on purpose: a touched but unchanged file is still a cache hit
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileStamp)) return false;
+            FileStamp other = (FileStamp) o;
+            return name.equals(other.name) && size == other.size && hash.length > 0
+                    && Arrays.equals(hash, other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + Arrays.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.demo;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares two catalog versions for action=diff. Each version is a ruleset directory tree, or a snapshot
+ * of an earlier extract: an appcat-ruleset.columnar file or an incremental appcat-ruleset.manifest, of which
+ * only the rulesets its extract run wrote are read, see {@link RulesetCache#readRuleStore(File)}.
+ * <p>
+ * Both versions are loaded and indexed in parallel. The index maps every ruleID to its rule and keeps a
+ * 64-bit hash of every compared field, so the diff is one hash lookup per rule and a rule whose field hashes
+ * all match is unchanged without comparing any strings. Cost is linear in the number of rules. The rules
+ * sharing a ruleID are matched identical rules first, then rules of the same ruleset, then the rest in
+ * file order, so reordering duplicate ruleIDs is no change.
+ * A rule that moved to another ruleset is reported as modified in the Ruleset field.
+ * A ruleset directory with files that fail to parse fails the diff, since their rules would otherwise be
+ * reported as removed; the files are listed in appcat-ruleset-errors.csv in the output directory.
+ */
+class RulesetDiff {
+
+    static final String REPORT_FILE = "appcat-ruleset-diff";
+    static final String ADDED = "added";
+    static final String REMOVED = "removed";
+    static final String MODIFIED = "modified";
+    // Compared fields, in report order
+    static final List<String> FIELDS = List.of("Ruleset", "When", "Description & Message", "Source", "Target", "Domain", "Category");
+    static final List<String> REPORT_COLUMNS = List.of("Change", "Ruleset", "RuleID", "Field", "Old", "New");
+    private static final int DESCRIPTION = 2;
+
+    private RulesetDiff() {
+    }
+
+    /** One report row: an added or removed rule, or one changed field of a modified rule. */
+    static class Change {
+        final String type;
+        final String ruleset;
+        final String ruleId;
+        final String field;
+        final String oldValue;
+        final String newValue;
+        // The current rule of a modified change, so the changed fields of one rule count as one modified rule
+        int rule = -1;
+
+        Change(String type, String ruleset, String ruleId, String field, String oldValue, String newValue) {
+            this.type = type;
+            this.ruleset = ruleset;
+            this.ruleId = ruleId;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    /** The rules of one catalog version grouped by ruleID, with the hash of every compared field. */
+    static class Catalog {
+        final RuleStore store;
+        final String[] keys;
+        // ruleID -> its rules in file order, usually one
+        final Map<String, List<Integer>> rules;
+        final long[] hashes;
+
+        Catalog(RuleStore store) {
+            this.store = store;
+            int count = store.getRuleCount();
+            keys = new String[count];
+            rules = new HashMap<>(count * 2);
+            hashes = new long[count * FIELDS.size()];
+            for (int r = 0; r < count; r++) {
+                String ruleId = store.getTextString(r, RuleStore.RULE_ID);
+                keys[r] = ruleId != null ? ruleId : "";
+                rules.computeIfAbsent(keys[r], k -> new ArrayList<>(1)).add(r);
+                for (int f = 0; f < FIELDS.size(); f++) {
+                    hashes[r * FIELDS.size() + f] = hash(field(store, r, f));
+                }
+            }
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        // True if field f of rule r hashes the same as field f of rule o of other, or all fields if f is -1
+        boolean same(int r, Catalog other, int o, int f) {
+            int fields = FIELDS.size();
+            for (int i = f < 0 ? 0 : f; i < (f < 0 ? fields : f + 1); i++) {
+                if (hashes[r * fields + i] != other.hashes[o * fields + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Value of compared field f of a rule. */
+    static CharSequence field(RuleStore store, int rule, int f) {
+        switch (f) {
+            case 0:
+                return store.getRulesetName(store.getRuleset(rule));
+            case 1:
+                return store.getText(rule, RuleStore.WHEN);
+            case DESCRIPTION:
+                return store.getText(rule, RuleStore.MESSAGE);
+            default:
+                return store.getLabel(rule, f - 3);
+        }
+    }
+
+    // 64-bit FNV-1a; null hashes differently from the empty string
+    private static long hash(CharSequence value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Loads a catalog version: a ruleset directory tree through the extract pipeline (honoring filters and
+     * threads of options), adding the files that fail to parse to errors, or a columnar or manifest snapshot file.
+     */
+    static RuleStore load(File path, ExtractOptions options, List<RulesetToExcel.ParseError> errors) throws IOException {
+        if (path.isDirectory()) {
+            return RulesetToExcel.loadRuleStore(path, options, null, errors);
+        }
+        if (!path.isFile()) {
+            throw new FileNotFoundException(path + " is neither a ruleset directory nor a snapshot file");
+        }
+        return RulesetCache.isManifest(path) ? RulesetCache.readRuleStore(path) : ColumnarRuleStoreWriter.read(path);
+    }
+
+    /** Changes from base to current: removed rules, then added rules, then changed fields of modified rules. */
+    static List<Change> diff(Catalog base, Catalog current) {
+        List<Change> removed = new ArrayList<>();
+        List<Change> added = new ArrayList<>();
+        List<Change> modified = new ArrayList<>();
+        int fields = FIELDS.size();
+        int[] matches = match(base, current);
+        boolean[] matched = new boolean[base.size()];
+        for (int r = 0; r < current.size(); r++) {
+            int b = matches[r];
+            if (b < 0) {
+                added.add(new Change(ADDED, string(field(current.store, r, 0)), current.keys[r], null, null,
+                        string(field(current.store, r, DESCRIPTION))));
+                continue;
+            }
+            matched[b] = true;
+            for (int f = 0; f < fields; f++) {
+                if (base.hashes[b * fields + f] != current.hashes[r * fields + f]) {
+                    Change change = new Change(MODIFIED, string(field(current.store, r, 0)), current.keys[r], FIELDS.get(f),
+                            string(field(base.store, b, f)), string(field(current.store, r, f)));
+                    change.rule = r;
+                    modified.add(change);
+                }
+            }
+        }
+        for (int b = 0; b < base.size(); b++) {
+            if (!matched[b]) {
+                removed.add(new Change(REMOVED, string(field(base.store, b, 0)), base.keys[b], null,
+                        string(field(base.store, b, DESCRIPTION)), null));
+            }
+        }
+        List<Change> changes = new ArrayList<>(removed.size() + added.size() + modified.size());
+        changes.addAll(removed);
+        changes.addAll(added);
+        changes.addAll(modified);
+        return changes;
+    }
+
+    /**
+     * The base rule of every current rule, -1 for an added one. Rules with the same ruleID are paired in three
+     * rounds: identical rules, then rules of the same ruleset, then the remaining ones in file order.
+     */
+    static int[] match(Catalog base, Catalog current) {
+        int[] matches = new int[current.size()];
+        Arrays.fill(matches, -1);
+        for (Map.Entry<String, List<Integer>> group : current.rules.entrySet()) {
+            List<Integer> candidates = base.rules.get(group.getKey());
+            if (candidates == null) {
+                continue;
+            }
+            List<Integer> rules = group.getValue();
+            if (rules.size() == 1 && candidates.size() == 1) {
+                matches[rules.get(0)] = candidates.get(0);
+                continue;
+            }
+            List<Integer> remaining = new ArrayList<>(candidates);
+            for (int round = 0; round < 3; round++) {
+                for (int r : rules) {
+                    if (matches[r] >= 0) {
+                        continue;
+                    }
+                    for (int i = 0; i < remaining.size(); i++) {
+                        int b = remaining.get(i);
+                        if (round == 2 || current.same(r, base, b, round == 0 ? -1 : 0)) {
+                            matches[r] = b;
+                            remaining.remove(i);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String string(CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Loads and indexes both versions in parallel, diffs them and writes the report in every format of
+     * options that the report supports (xlsx, csv) to outputDir.
+     */
+    static void run(File basePath, File currentPath, File outputDir, ExtractOptions options) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService loaders = Executors.newFixedThreadPool(2);
+        Catalog base;
+        Catalog current;
+        List<RulesetToExcel.ParseError> baseErrors = new ArrayList<>();
+        List<RulesetToExcel.ParseError> currentErrors = new ArrayList<>();
+        try {
+            Future<Catalog> baseFuture = loaders.submit(() -> RunMetrics.trackAllocations(() -> index(basePath, options, baseErrors)));
+            Future<Catalog> currentFuture = loaders.submit(() -> RunMetrics.trackAllocations(() -> index(currentPath, options, currentErrors)));
+            base = await(baseFuture);
+            current = await(currentFuture);
+        } finally {
+            loaders.shutdownNow();
+        }
+        List<RulesetToExcel.ParseError> errors = new ArrayList<>(baseErrors);
+        errors.addAll(currentErrors);
+        RulesetToExcel.writeErrorReport(outputDir, errors);
+        if (!errors.isEmpty()) {
+            throw new IOException(errors.size() + " file(s) could not be parsed, their rules would show as removed;"
+                    + " fix them or filter their rulesets out, see " + new File(outputDir, RulesetToExcel.ERRORS_FILE));
+        }
+        List<Change> changes = diff(base, current);
+
+        int[] counts = new int[3];
+        Set<Integer> modifiedRules = new HashSet<>();
+        for (Change change : changes) {
+            if (change.type.equals(REMOVED)) {
+                counts[0]++;
+            } else if (change.type.equals(ADDED)) {
+                counts[1]++;
+            } else if (modifiedRules.add(change.rule)) {
+                counts[2]++;
+            }
+        }
+        int unchanged = current.size() - counts[1] - counts[2];
+        for (String format : options.getFormats()) {
+            File file = new File(outputDir, REPORT_FILE + "." + format);
+            if (format.equals(RuleStoreWriter.FORMAT_CSV)) {
+                writeCsv(changes, file);
+            } else if (format.equals(RuleStoreWriter.FORMAT_XLSX)) {
+                writeXlsx(changes, counts, unchanged, file, options.getRowWindow() > 0 ? options.getRowWindow() : 100);
+            } else {
+                System.out.println("Skipping format " + format + ", the diff report is written as xlsx or csv");
+                continue;
+            }
+            System.out.println("Wrote " + changes.size() + " change(s) to " + file.getPath());
+        }
+        System.out.println("Diff: " + counts[0] + " removed, " + counts[1] + " added, " + counts[2] + " modified, "
+                + unchanged + " unchanged rule(s) (" + base.size() + " -> " + current.size() + ") in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private static Catalog index(File path, ExtractOptions options, List<RulesetToExcel.ParseError> errors) {
+        try {
+            return new Catalog(load(path, options, errors));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Catalog await(Future<Catalog> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading catalogs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    static void writeCsv(List<Change> changes, File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < REPORT_COLUMNS.size(); i++) {
+                if (i > 0) out.write(',');
+                CsvRuleStoreWriter.writeField(out, REPORT_COLUMNS.get(i));
+            }
+            out.write("\r\n");
+            for (Change change : changes) {
+                String[] values = {change.type, change.ruleset, change.ruleId, change.field, change.oldValue, change.newValue};
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) out.write(',');
+                    CsvRuleStoreWriter.writeField(out, values[i]);
+                }
+                out.write("\r\n");
+            }
+        }
+    }
+
+    /** Writes a Summary sheet with the counts and a Changes sheet with one row per change. */
+    static void writeXlsx(List<Change> changes, int[] counts, int unchanged, File file, int rowWindow) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            CellStyle wrapStyle = workbook.createCellStyle();
+            wrapStyle.setWrapText(true);
+
+            Sheet summary = workbook.createSheet("Summary");
+            String[] labels = {REMOVED, ADDED, MODIFIED, "unchanged"};
+            int[] values = {counts[0], counts[1], counts[2], unchanged};
+            for (int i = 0; i < labels.length; i++) {
+                Row row = summary.createRow(i);
+                row.createCell(0).setCellValue(labels[i]);
+                row.createCell(1).setCellValue(values[i]);
+            }
+            summary.setColumnWidth(0, 20 * 256);
+
+            Sheet sheet = workbook.createSheet("Changes");
+            Row titleRow = sheet.createRow(0);
+            for (int i = 0; i < REPORT_COLUMNS.size(); i++) {
+                createCell(titleRow, i, REPORT_COLUMNS.get(i), wrapStyle);
+            }
+            int rowNum = 1;
+            for (Change change : changes) {
+                Row row = sheet.createRow(rowNum++);
+                createCell(row, 0, change.type, wrapStyle);
+                createCell(row, 1, change.ruleset, wrapStyle);
+                createCell(row, 2, change.ruleId, wrapStyle);
+                createCell(row, 3, change.field, wrapStyle);
+                createCell(row, 4, change.oldValue, wrapStyle);
+                createCell(row, 5, change.newValue, wrapStyle);
+            }
+            int[] widths = {12, 20, 30, 22, 60, 60};
+            for (int i = 0; i < widths.length; i++) {
+                sheet.setColumnWidth(i, widths[i] * 256);
+            }
+            workbook.write(fos);
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+
+    private static void createCell(Row row, int column, String value, CellStyle style) {
+        Cell cell = row.createCell(column);
+        if (value != null) {
+            cell.setCellValue(value);
+        }
+        cell.setCellStyle(style);
+    }
+}
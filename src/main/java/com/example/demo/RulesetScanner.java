@@ -0,0 +1,259 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Finds the ruleset directories and their YAML files with one {@link Files#walkFileTree} pass, which gets
+ * type and size of every entry from its {@link BasicFileAttributes} instead of separate isDirectory,
+ * isFile and length calls per entry. The optional {@link Prefetcher} then reads the files of the next
+ * directories on a small I/O pool while earlier ones are parsed, so parsing does not wait on slow
+ * (network, overlay) filesystems. Directories and files are returned in directory stream order, the
+ * same order File.listFiles uses, so the workbook does not change. Symbolic links are followed. Parsing,
+ * the incremental manifest and the watch action all work on the scanned {@link RulesetDirectory}s, so no
+ * ruleset file is looked up or stat-ed again after the walk.
+ */
+class RulesetScanner {
+
+    static final String RULESET_FILE = "ruleset.yaml";
+    // Upper bound for file contents read ahead of the parser
+    static final long MAX_PREFETCH_BYTES = 64L * 1024 * 1024;
+
+    private RulesetScanner() {
+    }
+
+    /** A ruleset directory: its ruleset.yaml (null if it has none) and its rule files. */
+    static class RulesetDirectory {
+        final File dir;
+        Path rulesetFile;
+        final List<Path> ruleFiles = new ArrayList<>();
+        long size;
+        // Attributes of rulesetFile and the rule files, as read by the walk
+        private final Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+
+        RulesetDirectory(File dir) {
+            this.dir = dir;
+        }
+
+        /** ruleset.yaml first if present, then the rule files. */
+        List<Path> getFiles() {
+            List<Path> files = new ArrayList<>(ruleFiles.size() + 1);
+            if (rulesetFile != null) {
+                files.add(rulesetFile);
+            }
+            files.addAll(ruleFiles);
+            return files;
+        }
+
+        /** The attributes of one of {@link #getFiles()} at the time of the scan. */
+        BasicFileAttributes getAttributes(Path file) {
+            return attributes.get(file);
+        }
+
+        void add(Path file, BasicFileAttributes attrs) {
+            if (file.getFileName().toString().equals(RULESET_FILE)) {
+                rulesetFile = file;
+            } else {
+                ruleFiles.add(file);
+            }
+            attributes.put(file, attrs);
+            size += attrs.size();
+        }
+    }
+
+    /** File contents of one ruleset directory, rule files in the order of {@link RulesetDirectory#ruleFiles}. */
+    static class Contents {
+        final RulesetDirectory directory;
+        final byte[] rulesetFile;
+        final List<byte[]> ruleFiles;
+
+        Contents(RulesetDirectory directory, byte[] rulesetFile, List<byte[]> ruleFiles) {
+            this.directory = directory;
+            this.rulesetFile = rulesetFile;
+            this.ruleFiles = ruleFiles;
+        }
+
+        /** The bytes of {@link RulesetDirectory#getFiles()} in the same order, null for files that were not read. */
+        List<byte[]> getFiles() {
+            List<byte[]> files = new ArrayList<>(directory.ruleFiles.size() + 1);
+            if (directory.rulesetFile != null) {
+                files.add(rulesetFile);
+            }
+            for (int i = 0; i < directory.ruleFiles.size(); i++) {
+                files.add(i < ruleFiles.size() ? ruleFiles.get(i) : null);
+            }
+            return files;
+        }
+    }
+
+    /** Lists the subdirectories of rootDir that match filters, with their YAML files. */
+    static List<RulesetDirectory> scan(File rootDir, List<String> filters) throws IOException {
+        Path root = rootDir.toPath();
+        List<RulesetDirectory> result = new ArrayList<>();
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 2, new SimpleFileVisitor<>() {
+            private RulesetDirectory current;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String dirName = dir.getFileName().toString();
+                if (!RulesetToExcel.matchesFilters(dirName, filters)) {
+                    System.out.println("Skipping directory: " + dirName + " (not in filter list)");
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                current = new RulesetDirectory(dir.toFile());
+                result.add(current);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // Entries of the root are visited as files at depth 1, only files inside a ruleset directory count
+                if (current == null || !file.getParent().equals(current.dir.toPath())
+                        || !attrs.isRegularFile() || !file.getFileName().toString().endsWith(".yaml")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                current.add(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                if (e instanceof FileSystemLoopException) {
+                    System.err.println("Skipping " + file + ": symbolic link loop");
+                    return FileVisitResult.CONTINUE;
+                }
+                System.err.println("Cannot read " + file + ": " + e);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (!dir.equals(root)) {
+                    current = null;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Reads the directories accepted by wanted in order on ioThreads threads, keeping at most maxBytes of read
+     * but not yet released contents in memory (a directory larger than that is read on its own).
+     * {@link #get(int)} returns a directory's contents, {@link #release(Contents)} hands its bytes back to the
+     * budget. Directories that are not wanted, such as those the incremental manifest serves, are not read.
+     */
+    static class Prefetcher implements AutoCloseable {
+
+        private final List<RulesetDirectory> directories;
+        private final boolean[] wanted;
+        private final List<CompletableFuture<Contents>> contents = new ArrayList<>();
+        private final Semaphore budget;
+        private final int budgetKb;
+        private final ExecutorService readers;
+        private final Thread feeder;
+
+        Prefetcher(List<RulesetDirectory> directories, int ioThreads, long maxBytes, Predicate<RulesetDirectory> wanted) {
+            this.directories = directories;
+            this.wanted = new boolean[directories.size()];
+            for (int i = 0; i < directories.size(); i++) {
+                this.wanted[i] = wanted.test(directories.get(i));
+                contents.add(new CompletableFuture<>());
+            }
+            this.budgetKb = (int) Math.max(1, maxBytes / 1024);
+            this.budget = new Semaphore(budgetKb);
+            this.readers = Executors.newFixedThreadPool(ioThreads, daemon("ruleset-reader"));
+            this.feeder = daemon("ruleset-prefetch").newThread(this::feed);
+            feeder.start();
+        }
+
+        private static ThreadFactory daemon(String name) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        // Submits reads in directory order as long as the budget allows
+        private void feed() {
+            try {
+                for (int i = 0; i < directories.size(); i++) {
+                    if (!wanted[i]) {
+                        continue;
+                    }
+                    RulesetDirectory directory = directories.get(i);
+                    budget.acquire(permits(directory));
+                    CompletableFuture<Contents> future = contents.get(i);
+                    readers.execute(() -> RunMetrics.trackAllocations(() -> {
+                        try {
+                            return future.complete(read(directory));
+                        } catch (IOException | RuntimeException e) {
+                            budget.release(permits(directory));
+                            return future.completeExceptionally(e);
+                        }
+                    }));
+                }
+            } catch (InterruptedException e) {
+                // Closed before all directories were read
+            } catch (RejectedExecutionException e) {
+                // Closed while submitting
+            }
+        }
+
+        private int permits(RulesetDirectory directory) {
+            return (int) Math.min(budgetKb, Math.max(1, directory.size / 1024));
+        }
+
+        private static Contents read(RulesetDirectory directory) throws IOException {
+            byte[] rulesetFile = directory.rulesetFile != null ? Files.readAllBytes(directory.rulesetFile) : null;
+            List<byte[]> ruleFiles = new ArrayList<>(directory.ruleFiles.size());
+            if (rulesetFile != null) {
+                for (Path file : directory.ruleFiles) {
+                    ruleFiles.add(Files.readAllBytes(file));
+                }
+            }
+            return new Contents(directory, rulesetFile, ruleFiles);
+        }
+
+        /** Whether directory index is read ahead, only then may {@link #get(int)} be called for it. */
+        boolean isWanted(int index) {
+            return wanted[index];
+        }
+
+        /** Waits for the contents of directory index; throws IOException if it could not be read. */
+        Contents get(int index) throws IOException, InterruptedException {
+            try {
+                return contents.get(index).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        /** Returns the memory of parsed contents to the read-ahead budget. */
+        void release(Contents read) {
+            budget.release(permits(read.directory));
+        }
+
+        @Override
+        public void close() {
+            feeder.interrupt();
+            readers.shutdownNow();
+        }
+    }
+}
@@ -2,74 +2,134 @@ package com.example.demo;
 
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 public class RulesetToExcel {
 
+    // Titles of the rule columns written by extract, in column order
+    // Parses the files that have a time budget, see parseFile. Threads are created as callers need them and are
+    // daemons, so a cancelled parse that has not yet reached its next deadline check cannot keep the JVM alive
+    private static final ExecutorService PARSE_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "yaml-parse");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static final List<String> RULE_COLUMNS = List.of(
+            "RuleID", "When", "Description & Message", "Source", "Target", "Domain", "Category");
+
+    // Report of the files that failed to parse, written next to the output files by extract
+    static final String ERRORS_FILE = "appcat-ruleset-errors.csv";
+    static final List<String> ERROR_COLUMNS = List.of("Ruleset", "File", "Error");
+
     /**
      * Analyze function for action=analyze.
      * Logic:
      * 1. For each sheet in the Excel file at outputPath:
      *    - Add a new column "spring specific?".
-     *    - For each row, check the "When" column. If it contains "spring" or "properties",
-     *      mark "spring specific?" as "Yes", otherwise "No".
+     *    - For each row, check all columns for "spring" and the "When" column for "properties|".
+     *      If one of them matches, mark "spring specific?" as "Yes", otherwise "No".
      * 2. Save the modified Excel file back to outputPath.
+     * The check is the default classifier in classifiers.yaml, see {@link RuleClassifier}.
      */
     public static void recognizeSpringRules(String outputPath) {
+        recognizeSpringRules(outputPath, 0);
+    }
+
+    /**
+     * Same as {@link #recognizeSpringRules(String)}. When rowWindow is greater than 0 the workbook is read
+     * with POI's event API and rewritten through a streaming workbook keeping rowWindow rows per sheet in
+     * memory, see {@link StreamingSpringAnalyzer}.
+     */
+    public static void recognizeSpringRules(String outputPath, int rowWindow) {
+        recognizeSpringRules(outputPath, rowWindow, RuleClassifier.defaults());
+    }
+
+    /**
+     * Same as {@link #recognizeSpringRules(String, int)} with a set of classifiers instead of the
+     * default spring classifier. Every classifier writes Yes/No into its own column, which is added
+     * after the last column or reused if the title row already has it. All classifiers are evaluated
+     * in one scan of each row.
+     */
+    public static void recognizeSpringRules(String outputPath, int rowWindow, RuleClassifier classifier) {
+        if (rowWindow > 0) {
+            StreamingSpringAnalyzer.recognizeSpringRules(outputPath, rowWindow, classifier);
+            return;
+        }
         String excelFile = outputPath + "/appcat-ruleset.xlsx";
         // Use a single try-with-resources block for both input and workbook
+        long readStart = System.nanoTime();
         try (FileInputStream fis = new FileInputStream(excelFile);
              XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
+            RunMetrics.ANALYZE_READ.record(System.nanoTime() - readStart, TimeUnit.NANOSECONDS);
 
+            long classifyStart = System.nanoTime();
+            WorkbookCells cells = new WorkbookCells(workbook);
             for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
                 Sheet sheet = workbook.getSheetAt(i);
 
-                // Find the "When" column index from the title row (assume it's the second row, index 1)
+                // Resolve the column layout from the title row (assume it's the second row, index 1) once per sheet
                 Row titleRow = sheet.getRow(1);
                 if (titleRow == null) continue;
-                int lastCol = titleRow.getLastCellNum();
-
-                // if "spring specific?" column already exists, skip adding it and refer to it by springHeader cell; 
-                // otherwise, create it and refer to it by springHeader cell.
-                Cell springHeader = null;
-                for (int c = 0; c < lastCol; c++) {
-                    Cell cell = titleRow.getCell(c);
-                    if (cell != null && "spring specific?".equalsIgnoreCase(cell.getStringCellValue().trim())) {
-                        springHeader = cell;
-                        break;
+                List<String> titles = cellTexts(titleRow);
+                RuleClassifier.SheetClassifier sheetClassifier = classifier.forColumns(titles);
+
+                // If a classifier column already exists, reuse it; otherwise create it after the last column.
+                int[] resultCols = resolveResultColumns(titles, classifier.getColumnTitles());
+                for (int k = 0; k < resultCols.length; k++) {
+                    if (resultCols[k] >= titles.size()) {
+                        titleRow.createCell(resultCols[k]).setCellValue(classifier.getColumnTitles().get(k));
                     }
                 }
-                Boolean springHeaderExists = (springHeader != null);
-                // If "spring specific?" column does not exist, create it.
-                if (springHeader == null) {
-                    springHeader = titleRow.createCell(lastCol);
-                    springHeader.setCellValue("spring specific?");
-                }
-                lastCol = springHeader.getColumnIndex();
+
                 int lastRow = sheet.getLastRowNum();
                 for (int r = 2; r <= lastRow; r++) {
                     Row row = sheet.getRow(r);
                     if (row == null) continue;
-                    String result = isSpringSpecificRule(row) ? "Yes" : "No";
-                    Cell springCell = springHeaderExists ? row.getCell(lastCol) : row.createCell(lastCol);
-                    springCell.setCellValue(result);
+                    long result = sheetClassifier.classify(cellTexts(row));
+                    for (int k = 0; k < resultCols.length; k++) {
+                        Cell resultCell = row.getCell(resultCols[k]);
+                        if (resultCell == null) {
+                            resultCell = row.createCell(resultCols[k]);
+                        }
+                        resultCell.setCellValue((result & (1L << k)) != 0 ? "Yes" : "No");
+                    }
+                }
+                // Optionally, auto-size the new columns
+                for (int resultCol : resultCols) {
+                    sheet.autoSizeColumn(resultCol);
                 }
-                // Optionally, auto-size the new column
-                sheet.autoSizeColumn(lastCol);
             }
+            RunMetrics.ANALYZE_CLASSIFY.record(System.nanoTime() - classifyStart, TimeUnit.NANOSECONDS);
 
             // Save and close workbook and output stream in try-with-resources
+            long writeStart = System.nanoTime();
             try (FileOutputStream fos = new FileOutputStream(excelFile)) {
                 workbook.write(fos);
                 fos.flush();
             }
+            RunMetrics.ANALYZE_WRITE.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
             workbook.close(); // Explicitly close workbook to release file lock
             System.out.println("Analyze completed and Excel updated.");
         } catch (IOException e) {
@@ -77,40 +137,79 @@ public class RulesetToExcel {
         }
     }
 
-    private static boolean isSpringSpecificRule (Row row) {
-        if (row == null) return false;
-
-        // Check all columns' text on the row:
-        // 1. get the text of each cell in the row
-        // 2. if the text contains "spring", return true; especially if for "When" column, if it contains "properties|", return true.
-        int whenCol = -1;
-        int lastCol = row.getLastCellNum();
-        for (int c = 0; c < lastCol; c++) {
+    private static List<String> cellTexts(Row row) {
+        List<String> texts = new ArrayList<>();
+        for (int c = 0; c < row.getLastCellNum(); c++) {
             Cell cell = row.getCell(c);
-            String cellText = (cell != null) ? cell.toString().toLowerCase() : "";
-            if (cellText.contains("spring")) {
-                return true;
-            }
-            if (whenCol == -1 && cell != null && "when".equalsIgnoreCase(cell.getSheet().getRow(1).getCell(c).getStringCellValue().trim())) {
-                whenCol = c;
-            }
+            texts.add(cell != null ? cell.toString() : null);
         }
-        // Now, check "When" column for "properties|"
-        if (whenCol != -1) {
-            Cell whenCell = row.getCell(whenCol);
-            String whenVal = (whenCell != null) ? whenCell.toString().toLowerCase() : "";
-            if (whenVal.contains("properties|")) {
-                return true;
+        return texts;
+    }
+
+    /**
+     * Returns the column index of every result column title: its index in titles if the title row
+     * already has it, otherwise the next free column after titles.
+     */
+    static int[] resolveResultColumns(List<String> titles, List<String> resultTitles) {
+        int[] cols = new int[resultTitles.size()];
+        int next = titles.size();
+        for (int k = 0; k < cols.length; k++) {
+            cols[k] = -1;
+            for (int c = 0; c < titles.size(); c++) {
+                if (titles.get(c) != null && resultTitles.get(k).equalsIgnoreCase(titles.get(c).trim())) {
+                    cols[k] = c;
+                    break;
+                }
+            }
+            if (cols[k] == -1) {
+                cols[k] = next++;
             }
         }
-        return false;
-    }   
+        return cols;
+    }
 
     public static void execute(String rulesetPath, String outputPath) {
-        execute(rulesetPath, outputPath, null);
+        execute(rulesetPath, outputPath, (List<String>) null);
     }
 
     public static void execute(String rulesetPath, String outputPath, List<String> filters) {
+        execute(rulesetPath, outputPath, filters, 0);
+    }
+
+    /**
+     * Extract function for action=extract.
+     * When rowWindow is greater than 0 the workbook is written through POI's SXSSF streaming API:
+     * only the last rowWindow rows of the current sheet are kept on the heap, older rows are flushed
+     * to a temporary file. Otherwise the whole workbook is built in memory as an XSSFWorkbook.
+     * Both modes produce the same sheets, rows, column widths and wrap style.
+     */
+    public static void execute(String rulesetPath, String outputPath, List<String> filters, int rowWindow) {
+        execute(rulesetPath, outputPath, filters, rowWindow, 1);
+    }
+
+    /**
+     * Same as {@link #execute(String, String, List, int)}, but parses the ruleset directories on a pool of {@code threads}
+     * worker threads. Sheets are still added by the calling thread in directory order, so the
+     * workbook content does not depend on the number of threads.
+     */
+    public static void execute(String rulesetPath, String outputPath, List<String> filters, int rowWindow, int threads) {
+        execute(rulesetPath, outputPath, new ExtractOptions()
+                .setFilters(filters)
+                .setRowWindow(rowWindow)
+                .setThreads(threads));
+    }
+
+    /**
+     * Extract function for action=extract with all options, see {@link ExtractOptions}.
+     * With incremental extract a manifest (appcat-ruleset.manifest) is kept next to the workbook. It caches
+     * the rules of every ruleset directory keyed by the content hashes of its YAML files, so a rerun only
+     * parses the directories that changed. The workbook itself is always rewritten completely.
+     */
+    public static void execute(String rulesetPath, String outputPath, ExtractOptions options) {
+        if (!options.getFormats().equals(List.of(RuleStoreWriter.FORMAT_XLSX)) || options.getShardPolicy() != null) {
+            exportFormats(rulesetPath, outputPath, options);
+            return;
+        }
         String inputDir = rulesetPath; // 更改为您的实际路径
         String outputFile = outputPath + "/appcat-ruleset.xlsx";
 
@@ -126,20 +225,41 @@ public class RulesetToExcel {
         Workbook workbook = null;
         FileOutputStream fos = null;
         try {
-            workbook = new XSSFWorkbook();
+            workbook = WorkbookCells.newWorkbook(options.getRowWindow());
             File rootDir = new File(inputDir);
             if (!rootDir.isDirectory()) {
                 System.err.println("指定的路径不是一个目录！");
                 return;
             }
-            processRulesetFolder(rootDir, workbook, filters);
+            File manifestFile = new File(outputPath, RulesetCache.MANIFEST_FILE);
+            RulesetCache cache = options.isIncremental() ? RulesetCache.load(manifestFile, rootDir) : null;
+            WorkbookCells cells = new WorkbookCells(workbook);
+            List<String> resultTitles = options.getClassifier() != null ? options.getClassifier().getColumnTitles() : List.of();
+            SearchIndexWriter searchIndex = options.isIndex() ? new SearchIndexWriter(new File(outputPath, SearchIndexWriter.INDEX_DIR)) : null;
+            CoverageStats stats = options.isStats() ? new CoverageStats() : null;
+            List<ParseError> errors = processRulesetFolder(rootDir, options, cache, stats,
+                    withIndex((subDir, ruleset) -> writeRulesetSheet(cells, ruleset, resultTitles), searchIndex));
 
             // 写入Excel文件
+            long writeStart = System.nanoTime();
             fos = new FileOutputStream(outputFile);
             workbook.write(fos);
             fos.flush();
+            RunMetrics.WORKBOOK_WRITE.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
             System.out.println("Excel文件生成成功！");
-        } catch (IOException e) {
+            writeErrorReport(new File(outputPath), errors);
+            if (stats != null) {
+                stats.write(new File(outputPath, CoverageStats.FILE));
+            }
+            if (searchIndex != null) {
+                searchIndex.finish();
+            }
+            if (cache != null) {
+                cache.save(manifestFile);
+                System.out.println("Incremental extract: reused " + cache.getReusedCount()
+                        + " cached ruleset(s), parsed " + cache.getParsedCount());
+            }
+        } catch (IOException | UncheckedIOException e) {
             e.printStackTrace();
         } finally {
             try {
@@ -152,150 +272,570 @@ public class RulesetToExcel {
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            // SXSSF keeps flushed rows in temporary files, remove them once the workbook is written
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+
+    /**
+     * Extract into the formats of {@link ExtractOptions#getFormats()}: all rulesets are collected into a
+     * {@link RuleStore} first, then every {@link RuleStoreWriter} writes its file from the store. Sharded
+     * xlsx output goes this way as well, since the shards are only known once all rulesets are loaded.
+     */
+    private static void exportFormats(String rulesetPath, String outputPath, ExtractOptions options) {
+        File rootDir = new File(rulesetPath);
+        if (!rootDir.isDirectory()) {
+            System.err.println("指定的路径不是一个目录！");
+            return;
+        }
+        try {
+            File manifestFile = new File(outputPath, RulesetCache.MANIFEST_FILE);
+            RulesetCache cache = options.isIncremental() ? RulesetCache.load(manifestFile, rootDir) : null;
+            RuleStore store = new RuleStore(options.getClassifier() != null ? options.getClassifier().getColumnTitles() : List.of());
+            SearchIndexWriter searchIndex = options.isIndex() ? new SearchIndexWriter(new File(outputPath, SearchIndexWriter.INDEX_DIR)) : null;
+            CoverageStats stats = options.isStats() ? new CoverageStats() : null;
+            List<ParseError> errors = processRulesetFolder(rootDir, options, cache, stats,
+                    withIndex((subDir, ruleset) -> store.add(ruleset), searchIndex));
+
+            writeFormats(store, new File(outputPath), options);
+            writeErrorReport(new File(outputPath), errors);
+            if (stats != null) {
+                stats.write(new File(outputPath, CoverageStats.FILE));
+            }
+            if (searchIndex != null) {
+                searchIndex.finish();
+            }
+            if (cache != null) {
+                cache.save(manifestFile);
+                System.out.println("Incremental extract: reused " + cache.getReusedCount()
+                        + " cached ruleset(s), parsed " + cache.getParsedCount());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
         }
     }
 
-    private static void processRulesetFolder(File rootDir, Workbook workbook, List<String> filters) {
-        for (File subDir : rootDir.listFiles(File::isDirectory)) {
-            // Skip if filters are provided and this directory is not in the filter list
-            if (filters != null && !filters.isEmpty()) {
-                boolean shouldProcess = false;
-                String dirName = subDir.getName();
-                
-                // Check if any filter matches this directory
-                for (String filter : filters) {
-                    if (dirName.equals(filter) || dirName.contains(filter)) {
-                        shouldProcess = true;
-                        break;
+    /**
+     * Writes store in every format of options. Each file is written to a temporary file and then moved over the
+     * file of an earlier run, so a reader that has it open never sees a half-written one. Used by extract and by
+     * every refresh of {@link RulesetWatcher}.
+     */
+    static void writeFormats(RuleStore store, File outputDir, ExtractOptions options) throws IOException {
+        for (String format : options.getFormats()) {
+            RuleStoreWriter writer = RuleStoreWriter.forFormat(format, options);
+            File file = new File(outputDir, writer.getFileName());
+            File tmpFile = new File(outputDir, writer.getFileName() + ".tmp");
+            long writeStart = System.nanoTime();
+            writer.write(store, tmpFile);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            RunMetrics.formatWrite(format).record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
+            System.out.println("Wrote " + store.getRuleCount() + " rule(s) to " + file.getPath());
+        }
+    }
+
+    /**
+     * Writes one row per file that failed to parse to {@link #ERRORS_FILE} in outputDir, or deletes the report
+     * of an earlier run when there are none, so a report next to the output always belongs to it.
+     */
+    static void writeErrorReport(File outputDir, List<ParseError> errors) throws IOException {
+        File file = new File(outputDir, ERRORS_FILE);
+        if (errors.isEmpty()) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < ERROR_COLUMNS.size(); i++) {
+                if (i > 0) out.write(',');
+                CsvRuleStoreWriter.writeField(out, ERROR_COLUMNS.get(i));
+            }
+            out.write("\r\n");
+            for (ParseError error : errors) {
+                CsvRuleStoreWriter.writeField(out, error.ruleset);
+                out.write(',');
+                CsvRuleStoreWriter.writeField(out, error.file);
+                out.write(',');
+                CsvRuleStoreWriter.writeField(out, error.message);
+                out.write("\r\n");
+            }
+        }
+        System.err.println(errors.size() + " file(s) could not be parsed, see " + file.getPath());
+    }
+
+    private static BiConsumer<File, ParsedRuleset> withIndex(BiConsumer<File, ParsedRuleset> sink, SearchIndexWriter searchIndex) {
+        return searchIndex != null ? sink.andThen(searchIndex::add) : sink;
+    }
+
+    /** Loads and classifies all rulesets under rootDir into a store, honoring filters, threads and the cache. */
+    static RuleStore loadRuleStore(File rootDir, ExtractOptions options, RulesetCache cache) {
+        return loadRuleStore(rootDir, options, cache, new ArrayList<>());
+    }
+
+    /** Same as {@link #loadRuleStore(File, ExtractOptions, RulesetCache)}, adds the files that failed to parse to errors. */
+    static RuleStore loadRuleStore(File rootDir, ExtractOptions options, RulesetCache cache, List<ParseError> errors) {
+        RuleStore store = new RuleStore(options.getClassifier() != null ? options.getClassifier().getColumnTitles() : List.of());
+        errors.addAll(processRulesetFolder(rootDir, options, cache, null, (subDir, ruleset) -> store.add(ruleset)));
+        return store;
+    }
+
+    /**
+     * Loads every ruleset directory and hands each directory and its ruleset to sink on the calling thread, in
+     * directory order. With a classifier in options, the classification of every rule is set before it reaches sink.
+     * Files that fail to parse are skipped and returned, in directory order; a ruleset whose ruleset.yaml fails
+     * does not reach sink. With stats, every ruleset is counted into it on the thread that parsed it.
+     */
+    private static List<ParseError> processRulesetFolder(File rootDir, ExtractOptions options, RulesetCache cache,
+                                                         CoverageStats stats, BiConsumer<File, ParsedRuleset> sink) {
+        List<RulesetScanner.RulesetDirectory> subDirs;
+        long scanStart = System.nanoTime();
+        try {
+            subDirs = RulesetScanner.scan(rootDir, options.getFilters());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        RunMetrics.SCAN.record(System.nanoTime() - scanStart, TimeUnit.NANOSECONDS);
+        int threads = options.getThreads();
+        long timeoutMillis = options.getParseTimeoutMillis();
+        List<ParseError> errors = new ArrayList<>();
+        // Classification runs on the writer thread, the sheet classifier is not thread-safe
+        RuleClassifier.SheetClassifier classifier = options.getClassifier() != null
+                ? options.getClassifier().forColumns(RULE_COLUMNS)
+                : null;
+        // Read ahead all directories, except those the incremental cache serves without reading their files
+        RulesetScanner.Prefetcher prefetcher = options.getIoThreads() > 0
+                ? new RulesetScanner.Prefetcher(subDirs, options.getIoThreads(),
+                        Math.min(RulesetScanner.MAX_PREFETCH_BYTES, Runtime.getRuntime().maxMemory() / 8),
+                        cache != null ? cache::needsRead : directory -> true)
+                : null;
+        try {
+            if (threads <= 1) {
+                for (int i = 0; i < subDirs.size(); i++) {
+                    ParsedRuleset ruleset = count(stats, loadRuleset(subDirs.get(i), i, cache, prefetcher, timeoutMillis));
+                    if (ruleset != null) {
+                        accept(sink, subDirs.get(i).dir, classify(ruleset, classifier), errors);
                     }
                 }
-                
-                if (!shouldProcess) {
-                    System.out.println("Skipping directory: " + dirName + " (not in filter list)");
-                    continue;
+                return errors;
+            }
+
+            // Parse on the worker pool, write on this thread in directory order. At most 2 * threads parsed
+            // rulesets are waiting for the writer, so memory stays bounded when the writer is the slower side.
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                Deque<Future<ParsedRuleset>> pending = new ArrayDeque<>();
+                int next = 0;
+                int done = 0;
+                while (next < subDirs.size() || !pending.isEmpty()) {
+                    while (next < subDirs.size() && pending.size() < 2 * threads) {
+                        int index = next++;
+                        pending.add(pool.submit(() -> RunMetrics.trackAllocations(
+                                () -> count(stats, loadRuleset(subDirs.get(index), index, cache, prefetcher, timeoutMillis)))));
+                    }
+                    ParsedRuleset ruleset = awaitRuleset(pending.poll());
+                    File subDir = subDirs.get(done++).dir;
+                    if (ruleset != null) {
+                        accept(sink, subDir, classify(ruleset, classifier), errors);
+                    }
                 }
+                return errors;
+            } finally {
+                pool.shutdownNow();
+            }
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.close();
             }
-            processSubDirectory(subDir, workbook);
         }
     }
 
-    private static void processSubDirectory(File subDir, Workbook workbook) {
-        File rulesetFile = new File(subDir, "ruleset.yaml");
-        if (!rulesetFile.exists()) {
+    private static ParsedRuleset count(CoverageStats stats, ParsedRuleset ruleset) {
+        if (stats != null && ruleset != null && !ruleset.isFailed()) {
+            stats.add(ruleset);
+        }
+        return ruleset;
+    }
+
+    private static void accept(BiConsumer<File, ParsedRuleset> sink, File subDir, ParsedRuleset ruleset, List<ParseError> errors) {
+        for (ParseError error : ruleset.errors) {
+            System.err.println("Skipping " + error);
+        }
+        errors.addAll(ruleset.errors);
+        if (ruleset.isFailed()) {
             return;
         }
+        RunMetrics.rulesetRules(subDir.getName(), ruleset.rules.size());
+        sink.accept(subDir, ruleset);
+    }
+
+    static ParsedRuleset classify(ParsedRuleset ruleset, RuleClassifier.SheetClassifier classifier) {
+        if (classifier != null) {
+            long start = System.nanoTime();
+            for (RuleData rule : ruleset.rules) {
+                rule.classification = classifier.classify(rule);
+            }
+            RunMetrics.CLASSIFY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return ruleset;
+    }
 
-        // 解析ruleset.yaml
-        String name = "";
-        String description = "";
-        try (InputStream input = new FileInputStream(rulesetFile)) {
-            Yaml yaml = new Yaml();
-            Map<String, Object> data = yaml.load(input);
-            name = (String) data.getOrDefault("name", "");
-            description = (String) data.getOrDefault("description", "");
+    private static ParsedRuleset loadRuleset(RulesetScanner.RulesetDirectory subDir, int index, RulesetCache cache,
+                                             RulesetScanner.Prefetcher prefetcher, long timeoutMillis) {
+        if (prefetcher == null || !prefetcher.isWanted(index)) {
+            return cache != null
+                    ? cache.resolve(subDir, dir -> timedParse(dir, timeoutMillis))
+                    : timedParse(subDir, timeoutMillis);
+        }
+        RulesetScanner.Contents contents;
+        try {
+            contents = prefetcher.get(index);
         } catch (IOException e) {
-            e.printStackTrace();
-            return;
+            // Read the directory again file by file, which reports the file that fails
+            return cache != null
+                    ? cache.resolve(subDir, dir -> timedParse(dir, timeoutMillis))
+                    : timedParse(subDir, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading rulesets", e);
+        }
+        try {
+            return cache != null
+                    ? cache.resolve(subDir, contents, dir -> timedParse(contents, timeoutMillis))
+                    : timedParse(contents, timeoutMillis);
+        } finally {
+            prefetcher.release(contents);
+        }
+    }
+
+    static ParsedRuleset timedParse(RulesetScanner.RulesetDirectory subDir, long timeoutMillis) {
+        long start = System.nanoTime();
+        try {
+            return recordSerialize(parseSubDirectory(subDir, timeoutMillis));
+        } finally {
+            RunMetrics.PARSE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ParsedRuleset timedParse(RulesetScanner.Contents contents, long timeoutMillis) {
+        long start = System.nanoTime();
+        try {
+            return recordSerialize(parseContents(contents, timeoutMillis));
+        } finally {
+            RunMetrics.PARSE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // One sample per ruleset, like PARSE, instead of one per when block
+    private static ParsedRuleset recordSerialize(ParsedRuleset ruleset) {
+        if (ruleset != null && ruleset.serializeNanos > 0) {
+            RunMetrics.SERIALIZE_WHEN.record(ruleset.serializeNanos, TimeUnit.NANOSECONDS);
+        }
+        return ruleset;
+    }
+
+    private static ParsedRuleset awaitRuleset(Future<ParsedRuleset> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing rulesets", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    static boolean matchesFilters(String dirName, List<String> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return true;
+        }
+        // Check if any filter matches this directory
+        for (String filter : filters) {
+            if (dirName.equals(filter) || dirName.contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ParsedRuleset parseSubDirectory(RulesetScanner.RulesetDirectory subDir) {
+        return parseSubDirectory(subDir, ExtractOptions.DEFAULT_PARSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Parses ruleset.yaml and the rule files of one scanned ruleset directory.
+     * Returns null if the directory has no ruleset.yaml. Every file is parsed on its own with a budget of
+     * timeoutMillis (0 for none): a rule file that fails adds none of its rules, and a ruleset.yaml that
+     * fails gives a {@link ParsedRuleset#isFailed() failed} ruleset. Either way the failure is recorded in
+     * {@link ParsedRuleset#errors} and the remaining files are still parsed.
+     * Does not touch any workbook, so it is safe to call from worker threads.
+     */
+    static ParsedRuleset parseSubDirectory(RulesetScanner.RulesetDirectory subDir, long timeoutMillis) {
+        Path rulesetFile = subDir.rulesetFile;
+        if (rulesetFile == null) {
+            return null;
+        }
+
+        // 解析ruleset.yaml
+        String dirName = subDir.dir.getName();
+        List<ParseError> errors = new ArrayList<>();
+        long[] serializeNanos = new long[1];
+        ParsedRuleset ruleset = parseFile(dirName, rulesetFile.getFileName().toString(), timeoutMillis, errors, serializeNanos, ruleErrors -> {
+            try (InputStream input = Files.newInputStream(rulesetFile)) {
+                return parseRulesetHeader(YamlContext.get().load(input));
+            }
+        });
+        if (ruleset == null) {
+            return ParsedRuleset.failed(errors);
         }
 
         // 收集规则数据
-        List<RuleData> rules = new ArrayList<>();
-        File[] yamlFiles = subDir.listFiles(file ->
-                file.isFile() &&
-                file.getName().endsWith(".yaml") &&
-                !file.getName().equals("ruleset.yaml")
-        );
-
-        if (yamlFiles != null) {
-            for (File yamlFile : yamlFiles) {
-                processYamlFile(yamlFile, rules);
+        for (Path yamlFile : subDir.ruleFiles) {
+            String fileName = yamlFile.getFileName().toString();
+            List<RuleData> fileRules = parseFile(dirName, fileName, timeoutMillis, errors, serializeNanos, ruleErrors -> {
+                List<RuleData> rules = new ArrayList<>();
+                processYamlFile(yamlFile, dirName, rules, ruleErrors);
+                return rules;
+            });
+            if (fileRules != null) {
+                ruleset.rules.addAll(fileRules);
+            }
+        }
+        RunMetrics.BYTES_READ.increment(subDir.size);
+        ruleset.errors = errors;
+        ruleset.serializeNanos = serializeNanos[0];
+        return ruleset;
+    }
+
+    /** Same as {@link #parseSubDirectory(RulesetScanner.RulesetDirectory, long)} on file contents read by the {@link RulesetScanner.Prefetcher}. */
+    static ParsedRuleset parseContents(RulesetScanner.Contents contents, long timeoutMillis) {
+        if (contents.rulesetFile == null) {
+            return null;
+        }
+        RulesetScanner.RulesetDirectory directory = contents.directory;
+        String dirName = directory.dir.getName();
+        List<ParseError> errors = new ArrayList<>();
+        long[] serializeNanos = new long[1];
+        ParsedRuleset ruleset = parseFile(dirName, directory.rulesetFile.getFileName().toString(), timeoutMillis, errors, serializeNanos,
+                ruleErrors -> parseRulesetHeader(YamlContext.get().load(new ByteArrayInputStream(contents.rulesetFile))));
+        if (ruleset == null) {
+            return ParsedRuleset.failed(errors);
+        }
+
+        long bytes = contents.rulesetFile.length;
+        for (int i = 0; i < contents.ruleFiles.size(); i++) {
+            byte[] ruleFile = contents.ruleFiles.get(i);
+            String fileName = directory.ruleFiles.get(i).getFileName().toString();
+            List<RuleData> fileRules = parseFile(dirName, fileName, timeoutMillis, errors, serializeNanos, ruleErrors -> {
+                List<RuleData> rules = new ArrayList<>();
+                processYamlData(YamlContext.get().load(new ByteArrayInputStream(ruleFile)), dirName, fileName, rules, ruleErrors);
+                return rules;
+            });
+            if (fileRules != null) {
+                ruleset.rules.addAll(fileRules);
+            }
+            bytes += ruleFile.length;
+        }
+        RunMetrics.BYTES_READ.increment(bytes);
+        ruleset.errors = errors;
+        ruleset.serializeNanos = serializeNanos[0];
+        return ruleset;
+    }
+
+    @FunctionalInterface
+    private interface FileParser<T> {
+        /** Parses one file, adding the rules that fail on their own to ruleErrors. */
+        T parse(List<ParseError> ruleErrors) throws IOException;
+    }
+
+    /**
+     * Runs parser for one file within the file's time budget. Returns its result, or null after adding a
+     * {@link ParseError} to errors if it throws: an IOException, a YAMLException for malformed input or an
+     * exceeded loader limit, or a ClassCastException for a value of an unexpected type. The rules that failed
+     * on their own are added to errors as well, their files still count.
+     * With a budget the parse runs on {@link #PARSE_POOL} and is awaited with Future.get(timeout). A parse
+     * that is still running then is cancelled, and its file fails with a TimeoutException.
+     * The time the parse spent serializing when blocks is added to serializeNanos[0].
+     */
+    private static <T> T parseFile(String ruleset, String fileName, long timeoutMillis, List<ParseError> errors,
+                                   long[] serializeNanos, FileParser<T> parser) {
+        // Only read once the parse is done, a cancelled parse may still write to them
+        List<ParseError> ruleErrors = new ArrayList<>();
+        long[] dumpNanos = new long[1];
+        T result;
+        try {
+            if (timeoutMillis > 0) {
+                result = awaitParse(PARSE_POOL.submit(() -> RunMetrics.trackAllocations(
+                        () -> runParser(parser, ruleErrors, dumpNanos, timeoutMillis))), timeoutMillis);
+            } else {
+                result = runParser(parser, ruleErrors, dumpNanos, 0);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing " + fileName, e);
+        } catch (UncheckedIOException e) {
+            RunMetrics.PARSE_FAILURES.increment();
+            errors.add(new ParseError(ruleset, fileName, e.getCause()));
+            return null;
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            RunMetrics.PARSE_FAILURES.increment();
+            errors.add(new ParseError(ruleset, fileName, e));
+            return null;
+        }
+        serializeNanos[0] += dumpNanos[0];
+        RunMetrics.PARSE_FAILURES.increment(ruleErrors.size());
+        errors.addAll(ruleErrors);
+        return result;
+    }
+
+    // Runs on a parse thread, or on the calling thread without a budget. The YamlContext checks the budget as
+    // well, so a cancelled parse stops at its next node
+    private static <T> T runParser(FileParser<T> parser, List<ParseError> ruleErrors, long[] dumpNanos, long timeoutMillis) {
+        YamlContext context = YamlContext.get();
+        context.startFile(timeoutMillis);
+        try {
+            return parser.parse(ruleErrors);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            dumpNanos[0] = context.getDumpNanos();
+            context.startFile(0);
         }
+    }
+
+    private static <T> T awaitParse(Future<T> future, long timeoutMillis)
+            throws IOException, TimeoutException, InterruptedException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new TimeoutException("Parse timeout of " + timeoutMillis + " ms exceeded");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ParsedRuleset parseRulesetHeader(Object loaded) {
+        Map<String, Object> data = (Map<String, Object>) loaded;
+        String name = (String) data.getOrDefault("name", "");
+        String description = (String) data.getOrDefault("description", "");
+        return new ParsedRuleset(name, description, new ArrayList<>());
+    }
+
+    static void writeRulesetSheet(WorkbookCells cells, ParsedRuleset ruleset) {
+        writeRulesetSheet(cells, ruleset, List.of());
+    }
+
+    /**
+     * Adds the sheet of one ruleset. For every title in resultTitles a Yes/No column follows the rule
+     * columns, filled from bit k of {@link RuleData#classification}, as analyze-spring would add them.
+     */
+    static void writeRulesetSheet(WorkbookCells cells, ParsedRuleset ruleset, List<String> resultTitles) {
+        Workbook workbook = cells.getWorkbook();
+        String name = ruleset.name;
+        String description = ruleset.description;
+        List<RuleData> rules = ruleset.rules;
 
         // 创建Sheet并写入数据
         if (name.isEmpty()) {
             name = "Sheet" + (workbook.getNumberOfSheets() + 1);
         }
+        long start = System.nanoTime();
         String safeName = WorkbookUtil.createSafeSheetName(name);
         Sheet sheet = workbook.createSheet(safeName);
         int rowNum = 0;
 
         // 写入首行：name和description
+        // All cells wrap. The workbook's wrap style is applied while the cells are created, since a
+        // streaming workbook no longer holds rows that were flushed out of its row window.
         Row headerRow = sheet.createRow(rowNum++);
-        headerRow.createCell(0).setCellValue("Description");
-        headerRow.createCell(1).setCellValue("name:" + name + " Description:" + description);
+        cells.text(headerRow, 0, "Description");
+        cells.text(headerRow, 1, "name:" + name + " Description:" + description);
 
         // 写入数据标题行
         Row titleRow = sheet.createRow(rowNum++);
-        titleRow.createCell(0).setCellValue("RuleID");
-        titleRow.createCell(1).setCellValue("When");
-        titleRow.createCell(2).setCellValue("Description & Message");
-        titleRow.createCell(3).setCellValue("Source");
-        titleRow.createCell(4).setCellValue("Target");
-        titleRow.createCell(5).setCellValue("Domain");
-        titleRow.createCell(6).setCellValue("Category");
+        for (int i = 0; i < RULE_COLUMNS.size(); i++) {
+            cells.text(titleRow, i, RULE_COLUMNS.get(i));
+        }
+        for (int k = 0; k < resultTitles.size(); k++) {
+            cells.text(titleRow, RULE_COLUMNS.size() + k, resultTitles.get(k));
+        }
 
         // 写入规则数据
         for (RuleData rule : rules) {
             Row dataRow = sheet.createRow(rowNum++);
-            dataRow.createCell(0).setCellValue(rule.ruleId);
-            dataRow.createCell(1).setCellValue(rule.when);
-            dataRow.createCell(2).setCellValue(rule.mergedDescription);
-            dataRow.createCell(3).setCellValue(rule.source);
-            dataRow.createCell(4).setCellValue(rule.target);
-            dataRow.createCell(5).setCellValue(rule.domain);
-            dataRow.createCell(6).setCellValue(rule.category);
+            cells.text(dataRow, 0, rule.ruleId);
+            cells.text(dataRow, 1, rule.when);
+            cells.text(dataRow, 2, rule.mergedDescription);
+            cells.text(dataRow, 3, rule.source);
+            cells.text(dataRow, 4, rule.target);
+            cells.text(dataRow, 5, rule.domain);
+            cells.text(dataRow, 6, rule.category);
+            for (int k = 0; k < resultTitles.size(); k++) {
+                cells.text(dataRow, RULE_COLUMNS.size() + k, (rule.classification & (1L << k)) != 0 ? "Yes" : "No");
+            }
         }
 
         // Set column widths: RuleID=20, When=50, Description & Message=50, others=20
         sheet.setColumnWidth(0, 20 * 256); // RuleID
         sheet.setColumnWidth(1, 50 * 256); // When
         sheet.setColumnWidth(2, 100 * 256); // Description & Message
-        for (int i = 3; i < 7; i++) {
+        for (int i = 3; i < RULE_COLUMNS.size() + resultTitles.size(); i++) {
             sheet.setColumnWidth(i, 20 * 256);
         }
-        
-        // Enable word wrap for all cells
-        CellStyle wrapStyle = workbook.createCellStyle();
-        wrapStyle.setWrapText(true);
-        
-        // Apply word wrap to all cells in the sheet
-        for (int i = 0; i <= rowNum; i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                for (int j = 0; j < 7; j++) {
-                    Cell cell = row.getCell(j);
-                    if (cell != null) {
-                        cell.setCellStyle(wrapStyle);
-                    }
-                }
-            }
+        RunMetrics.SHEET_POPULATE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    static void processYamlFile(Path yamlFile, String ruleset, List<RuleData> rules, List<ParseError> errors) throws IOException {
+        try (InputStream input = Files.newInputStream(yamlFile)) {
+            processYamlData(YamlContext.get().load(input), ruleset, yamlFile.getFileName().toString(), rules, errors);
         }
     }
 
-    private static void processYamlFile(File yamlFile, List<RuleData> rules) {
-        try (InputStream input = new FileInputStream(yamlFile)) {
-            Yaml yaml = new Yaml();
-            Object data = yaml.load(input);
-            if (data instanceof List) {
-                for (Object item : (List<?>) data) {
-                    if (item instanceof Map) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> mapItem = (Map<String, Object>) item;
-                        extractRuleData(mapItem, rules);
-                    }
+    /**
+     * Adds the rules of one loaded rule file to rules. A rule with a value of an unexpected type, for example a
+     * numeric ruleID, is left out and added to errors, the other rules of the file are kept.
+     */
+    static void processYamlData(Object data, String ruleset, String fileName, List<RuleData> rules, List<ParseError> errors) {
+        if (data instanceof List) {
+            int index = 0;
+            for (Object item : (List<?>) data) {
+                index++;
+                if (item instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> mapItem = (Map<String, Object>) item;
+                    extractRuleData(mapItem, index, ruleset, fileName, rules, errors);
                 }
-            } else if (data instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> mapData = (Map<String, Object>) data;
-                extractRuleData(mapData, rules);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        } else if (data instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> mapData = (Map<String, Object>) data;
+            extractRuleData(mapData, 1, ruleset, fileName, rules, errors);
         }
     }
 
-    private static void extractRuleData(Map<String, Object> ruleData, List<RuleData> rules) {
+    private static void extractRuleData(Map<String, Object> ruleData, int index, String ruleset, String fileName,
+                                        List<RuleData> rules, List<ParseError> errors) {
+        try {
+            extractRuleData(ruleData, rules);
+        } catch (ClassCastException e) {
+            Object ruleId = ruleData.get("ruleID");
+            errors.add(new ParseError(ruleset, fileName, ruleId instanceof String ? (String) ruleId : "#" + index, e));
+        }
+    }
+
+    static void extractRuleData(Map<String, Object> ruleData, List<RuleData> rules) {
+        YamlContext.get().checkDeadline();
         String ruleId = (String) ruleData.get("ruleID");
         Object whenObj = ruleData.get("when");
         String when = serializeWhen(whenObj);
@@ -303,12 +843,21 @@ public class RulesetToExcel {
         String message = (String) ruleData.get("message");
         String merged = mergeDescriptionAndMessage(desc, message);
 
-        // Extract labels
+        RuleData rule = new RuleData(ruleId, when, merged);
+        extractLabels(ruleData.get("labels"), rule);
+        rule.providers = conditionProviders(whenObj);
+        rules.add(rule);
+    }
+
+    /**
+     * Fills source, target, domain and category of rule from a rule's labels list,
+     * joining repeated labels with ", ".
+     */
+    static void extractLabels(Object labelsObj, RuleData rule) {
         String source = "";
         String target = "";
         String domain = "";
         String category = "";
-        Object labelsObj = ruleData.get("labels");
         if (labelsObj instanceof List) {
             for (Object labelObj : (List<?>) labelsObj) {
                 if (labelObj instanceof String) {
@@ -342,16 +891,43 @@ public class RulesetToExcel {
             }
         }
 
-        rules.add(new RuleData(ruleId, when, merged, source, target, domain, category));
+        rule.source = source;
+        rule.target = target;
+        rule.domain = domain;
+        rule.category = category;
+    }
+
+    /**
+     * The distinct condition provider types of a when block in order of appearance, joined with ", ",
+     * e.g. "builtin.file, java.referenced". Provider types are the dotted keys; or, and and the other keys
+     * are descended into, the arguments of a provider are not.
+     */
+    static String conditionProviders(Object whenObj) {
+        Set<String> providers = new LinkedHashSet<>();
+        collectProviders(whenObj, providers);
+        return String.join(", ", providers);
+    }
+
+    private static void collectProviders(Object node, Set<String> providers) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                if (key.indexOf('.') > 0) {
+                    providers.add(key);
+                } else {
+                    collectProviders(entry.getValue(), providers);
+                }
+            }
+        } else if (node instanceof List) {
+            for (Object item : (List<?>) node) {
+                collectProviders(item, providers);
+            }
+        }
     }
 
-    private static String serializeWhen(Object whenObj) {
+    static String serializeWhen(Object whenObj) {
         if (whenObj == null) return "";
-        DumperOptions options = new DumperOptions();
-        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        options.setIndent(2);
-        options.setPrettyFlow(true);
-        return new Yaml(options).dump(whenObj).trim();
+        return YamlContext.get().dump(whenObj);
     }
 
     private static String mergeDescriptionAndMessage(String desc, String msg) {
@@ -364,6 +940,60 @@ public class RulesetToExcel {
         }
     }
 
+    static class ParsedRuleset {
+        String name;
+        String description;
+        List<RuleData> rules;
+        // Files of this ruleset that failed to parse, their rules are missing from rules
+        List<ParseError> errors = List.of();
+        // Time spent serializing when blocks, recorded once per ruleset by timedParse
+        long serializeNanos;
+
+        ParsedRuleset(String name, String description, List<RuleData> rules) {
+            this.name = name;
+            this.description = description;
+            this.rules = rules;
+        }
+
+        /** A ruleset whose ruleset.yaml could not be parsed, it has no rules and gets no sheet. */
+        static ParsedRuleset failed(List<ParseError> errors) {
+            ParsedRuleset ruleset = new ParsedRuleset(null, null, List.of());
+            ruleset.errors = errors;
+            return ruleset;
+        }
+
+        boolean isFailed() {
+            return name == null;
+        }
+    }
+
+    /** A file that failed to parse, reported in {@link #ERRORS_FILE}. */
+    static class ParseError {
+        final String ruleset;
+        final String file;
+        final String message;
+
+        ParseError(String ruleset, String file, Exception e) {
+            this(ruleset, file, null, e);
+        }
+
+        /** A single rule of file that failed, named by its ruleID, or by #position in the file if it has none. */
+        ParseError(String ruleset, String file, String rule, Exception e) {
+            this.ruleset = ruleset;
+            this.file = file;
+            // The first line, YAMLExceptions continue with a snippet of the input
+            String text = e.getMessage() != null ? e.getMessage().strip() : "";
+            int newline = text.indexOf('\n');
+            this.message = (rule != null ? "Rule " + rule + ": " : "") + e.getClass().getSimpleName()
+                    + (text.isEmpty() ? "" : ": " + (newline >= 0 ? text.substring(0, newline) : text));
+        }
+
+        @Override
+        public String toString() {
+            return ruleset + "/" + file + ": " + message;
+        }
+    }
+
     static class RuleData {
         String ruleId;
         String when;
@@ -372,6 +1002,10 @@ public class RulesetToExcel {
         String target;
         String domain;
         String category;
+        // Distinct condition provider types of the when block, joined with ", ", see conditionProviders
+        String providers = "";
+        // Bit k set if classifier k matched, see RuleClassifier; only set when extract classifies
+        long classification;
 
         RuleData(String ruleId, String when, String mergedDescription) {
             this(ruleId, when, mergedDescription, "", "", "", "");
@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParseError;
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Daemon for action=watch. Extracts once, then keeps the parsed rulesets in memory and watches the
+ * ruleset directories with a {@link WatchService}. Changed directories are re-parsed, and once no
+ * change arrived for debounceMillis the output files are rewritten from the in-memory model, the
+ * same way extract writes them: every format through {@link RulesetToExcel#writeFormats}, which
+ * moves finished files into place, then the parse error report, the coverage statistics and, with
+ * metrics, the run metrics of the refresh. Runs until the thread is interrupted.
+ */
+class RulesetWatcher {
+
+    static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final File rootDir;
+    private final File outputDir;
+    private final ExtractOptions options;
+    private final long debounceMillis;
+    private final boolean metrics;
+    // Only used from the watch thread
+    private final RuleClassifier.SheetClassifier classifier;
+    private final Map<File, ParsedRuleset> rulesets = new HashMap<>();
+    // Files of each directory that failed to parse when it was last parsed
+    private final Map<File, List<ParseError>> errors = new HashMap<>();
+    private final Map<WatchKey, File> watchedDirs = new HashMap<>();
+    private final Set<File> dirty = new HashSet<>();
+
+    RulesetWatcher(String rulesetPath, String outputPath, ExtractOptions options, long debounceMillis, boolean metrics) {
+        this.rootDir = new File(rulesetPath).getAbsoluteFile();
+        this.outputDir = new File(outputPath);
+        this.options = options;
+        this.debounceMillis = debounceMillis;
+        this.metrics = metrics;
+        this.classifier = options.getClassifier() != null ? options.getClassifier().forColumns(RulesetToExcel.RULE_COLUMNS) : null;
+    }
+
+    void run() throws IOException {
+        try (WatchService watchService = rootDir.toPath().getFileSystem().newWatchService()) {
+            register(watchService, rootDir);
+            for (RulesetScanner.RulesetDirectory directory : RulesetScanner.scan(rootDir, options.getFilters())) {
+                register(watchService, directory.dir);
+                dirty.add(directory.dir);
+            }
+            refresh();
+            System.out.println("Watching " + rootDir + " for changes, press Ctrl+C to stop");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = dirty.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // Quiet for debounceMillis, write what changed
+                    refresh();
+                    continue;
+                }
+                File dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    onEvent(watchService, dir, event);
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed on shutdown
+        }
+    }
+
+    private void onEvent(WatchService watchService, File dir, WatchEvent<?> event) throws IOException {
+        if (event.kind() == OVERFLOW) {
+            // Events were lost, re-parse every directory
+            dirty.addAll(rulesets.keySet());
+            for (RulesetScanner.RulesetDirectory directory : RulesetScanner.scan(rootDir, options.getFilters())) {
+                if (!watchedDirs.containsValue(directory.dir)) {
+                    register(watchService, directory.dir);
+                }
+                dirty.add(directory.dir);
+            }
+            return;
+        }
+        if (dir == null) {
+            return;
+        }
+        File changed = new File(dir, event.context().toString());
+        if (dir.equals(rootDir)) {
+            // A ruleset directory was created, renamed or deleted
+            if (!RulesetToExcel.matchesFilters(changed.getName(), options.getFilters())) {
+                return;
+            }
+            if (event.kind() == ENTRY_CREATE && changed.isDirectory()) {
+                register(watchService, changed);
+                dirty.add(changed);
+            } else if (event.kind() == ENTRY_DELETE && rulesets.containsKey(changed)) {
+                dirty.add(changed);
+            }
+        } else if (changed.getName().endsWith(".yaml")) {
+            dirty.add(dir);
+        }
+    }
+
+    private void register(WatchService watchService, File dir) throws IOException {
+        WatchKey key = dir.toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        watchedDirs.put(key, dir);
+    }
+
+    /** Scans the ruleset tree, re-parses the dirty directories and rewrites the output files. */
+    private void refresh() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        RunMetrics.startRun();
+        long start = System.nanoTime();
+        int changed = dirty.size();
+        List<RulesetScanner.RulesetDirectory> directories;
+        try {
+            directories = RulesetScanner.scan(rootDir, options.getFilters());
+            RunMetrics.SCAN.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            // Keep the directories dirty, the next refresh scans again
+            System.err.println("Could not scan " + rootDir + ": " + e.getMessage());
+            return;
+        }
+        Set<File> scanned = new HashSet<>();
+        for (RulesetScanner.RulesetDirectory directory : directories) {
+            scanned.add(directory.dir);
+            if (!dirty.contains(directory.dir)) {
+                continue;
+            }
+            ParsedRuleset ruleset = RulesetToExcel.timedParse(directory, options.getParseTimeoutMillis());
+            errors.put(directory.dir, ruleset != null ? ruleset.errors : List.of());
+            if (ruleset != null) {
+                for (ParseError error : ruleset.errors) {
+                    System.err.println("Skipping " + error);
+                }
+            }
+            if (ruleset != null && !ruleset.isFailed()) {
+                RunMetrics.rulesetRules(directory.dir.getName(), ruleset.rules.size());
+                rulesets.put(directory.dir, RulesetToExcel.classify(ruleset, classifier));
+            } else {
+                rulesets.remove(directory.dir);
+            }
+        }
+        // Deleted directories
+        rulesets.keySet().retainAll(scanned);
+        errors.keySet().retainAll(scanned);
+        dirty.clear();
+
+        // Same sheet order and error order as extract, the order of the scan
+        RuleStore store = new RuleStore(classifier != null ? classifier.getColumnTitles() : List.of());
+        Map<File, ParsedRuleset> ordered = new LinkedHashMap<>();
+        List<ParseError> parseErrors = new ArrayList<>();
+        CoverageStats stats = options.isStats() ? new CoverageStats() : null;
+        for (RulesetScanner.RulesetDirectory directory : directories) {
+            parseErrors.addAll(errors.getOrDefault(directory.dir, List.of()));
+            ParsedRuleset ruleset = rulesets.get(directory.dir);
+            if (ruleset != null) {
+                store.add(ruleset);
+                ordered.put(directory.dir, ruleset);
+                if (stats != null) {
+                    stats.add(ruleset);
+                }
+            }
+        }
+        try {
+            RulesetToExcel.writeFormats(store, outputDir, options);
+            RulesetToExcel.writeErrorReport(outputDir, parseErrors);
+            if (stats != null) {
+                stats.write(new File(outputDir, CoverageStats.FILE));
+            }
+            if (options.isIndex()) {
+                // Unchanged rulesets keep their segments, see SearchIndexWriter
+                SearchIndexWriter searchIndex = new SearchIndexWriter(new File(outputDir, SearchIndexWriter.INDEX_DIR));
+                ordered.forEach(searchIndex::add);
+                searchIndex.finish();
+            }
+            System.out.println("Re-exported " + store.getRuleCount() + " rule(s) from " + store.getRulesetCount()
+                    + " ruleset(s), " + changed + " directory(ies) re-parsed in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            // Each refresh is a run, the counters add up over the refreshes like those of a long running service
+            RunMetrics.finishRun(DemoApplication.ACTION_WATCH);
+            if (metrics) {
+                RunMetrics.write(outputDir);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Keep watching, the next change retries the write
+            System.err.println("Could not write output files: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Phase timers and counters of extract and analyze runs, kept in one Micrometer registry that is also
+ * the application's {@link MeterRegistry} bean. Recording is always on: a timer or counter update is a
+ * few adder increments, and timers are recorded once per ruleset or workbook except for serializeWhen.
+ * With metrics=true the registry is written to appcat-ruleset.metrics.json and appcat-ruleset.metrics.prom
+ * (Prometheus text format) at the end of the run.
+ * <p>
+ * Peak heap is the sum of the peak usage of the heap memory pools since {@link #startRun()}, an upper
+ * bound of the real peak. Allocated bytes are those of the run thread plus those of worker tasks
+ * wrapped in {@link #trackAllocations(Supplier)}; -1 if the JVM cannot measure thread allocations.
+ */
+final class RunMetrics {
+
+    static final String JSON_FILE = "appcat-ruleset.metrics.json";
+    static final String PROMETHEUS_FILE = "appcat-ruleset.metrics.prom";
+
+    private static final MeterRegistry REGISTRY = new SimpleMeterRegistry();
+
+    static final Timer SCAN = REGISTRY.timer("extract.scan");
+    static final Timer PARSE = REGISTRY.timer("extract.parse");
+    static final Timer SERIALIZE_WHEN = REGISTRY.timer("extract.serialize.when");
+    static final Timer CLASSIFY = REGISTRY.timer("extract.classify");
+    static final Timer SHEET_POPULATE = REGISTRY.timer("extract.sheet.populate");
+    static final Timer WORKBOOK_WRITE = REGISTRY.timer("extract.workbook.write");
+    static final Timer ANALYZE_READ = REGISTRY.timer("analyze.read");
+    static final Timer ANALYZE_CLASSIFY = REGISTRY.timer("analyze.classify");
+    static final Timer ANALYZE_WRITE = REGISTRY.timer("analyze.write");
+    static final Counter RULES = REGISTRY.counter("extract.rules");
+    static final Counter BYTES_READ = REGISTRY.counter("extract.bytes.read");
+    static final Counter PARSE_FAILURES = REGISTRY.counter("extract.parse.failures");
+
+    private static final AtomicLong PEAK_HEAP = REGISTRY.gauge("jvm.heap.peak.bytes", new AtomicLong());
+    private static final AtomicLong ALLOCATED = REGISTRY.gauge("jvm.allocated.bytes", new AtomicLong());
+    private static final LongAdder WORKER_ALLOCATED = new LongAdder();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private static volatile Thread runThread;
+    private static long runStartAllocated;
+    private static long runStart;
+
+    private RunMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations;
+            }
+        }
+        return null;
+    }
+
+    static MeterRegistry registry() {
+        return REGISTRY;
+    }
+
+    /** Counts the rules of one ruleset directory, tagged with the directory name. */
+    static void rulesetRules(String dirName, int rules) {
+        REGISTRY.counter("extract.ruleset.rules", "ruleset", dirName).increment(rules);
+        RULES.increment(rules);
+    }
+
+    /** Times the output file of one format written from the rule store. */
+    static Timer formatWrite(String format) {
+        return REGISTRY.timer("extract.format.write", "format", format);
+    }
+
+    /** Resets the heap peaks and starts counting allocations of the calling thread. */
+    static void startRun() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        WORKER_ALLOCATED.reset();
+        runThread = Thread.currentThread();
+        runStartAllocated = currentThreadAllocatedBytes();
+        runStart = System.nanoTime();
+    }
+
+    /** Records the run time of action and the memory gauges. Call on the thread that called {@link #startRun()}. */
+    static void finishRun(String action) {
+        REGISTRY.timer("run", "action", action.toLowerCase(Locale.ROOT)).record(System.nanoTime() - runStart, TimeUnit.NANOSECONDS);
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        PEAK_HEAP.set(peak);
+        ALLOCATED.set(THREADS != null ? currentThreadAllocatedBytes() - runStartAllocated + WORKER_ALLOCATED.sum() : -1);
+        runThread = null;
+    }
+
+    /** Runs task and adds its allocations to the run's unless it runs on the run thread, which is counted as a whole. */
+    static <T> T trackAllocations(Supplier<T> task) {
+        if (THREADS == null || Thread.currentThread() == runThread) {
+            return task.get();
+        }
+        long before = currentThreadAllocatedBytes();
+        try {
+            return task.get();
+        } finally {
+            WORKER_ALLOCATED.add(currentThreadAllocatedBytes() - before);
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /** Writes the JSON and Prometheus text dump of all meters into outputDir. */
+    static void write(File outputDir) throws IOException {
+        List<Meter> meters = new ArrayList<>(REGISTRY.getMeters());
+        meters.sort(Comparator.comparing((Meter m) -> m.getId().getName()).thenComparing(m -> m.getId().getTags().toString()));
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDir, JSON_FILE)), StandardCharsets.UTF_8))) {
+            writeJson(meters, out);
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDir, PROMETHEUS_FILE)), StandardCharsets.UTF_8))) {
+            writePrometheus(meters, out);
+        }
+        System.out.println("Metrics written to " + new File(outputDir, JSON_FILE).getPath() + " and " + PROMETHEUS_FILE);
+    }
+
+    // {"meters":[{"name":..,"tags":{..},"type":"timer","count":..,"totalSeconds":..,"maxSeconds":..}, ...]}
+    private static void writeJson(List<Meter> meters, Writer out) throws IOException {
+        out.write("{\"meters\":[");
+        for (int i = 0; i < meters.size(); i++) {
+            Meter meter = meters.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("{\"name\":");
+            Json.appendString(out, meter.getId().getName());
+            out.write(",\"tags\":{");
+            List<Tag> tags = meter.getId().getTags();
+            for (int t = 0; t < tags.size(); t++) {
+                if (t > 0) out.write(',');
+                Json.appendString(out, tags.get(t).getKey());
+                out.write(':');
+                Json.appendString(out, tags.get(t).getValue());
+            }
+            out.write("}");
+            if (meter instanceof Timer) {
+                Timer timer = (Timer) meter;
+                out.write(",\"type\":\"timer\",\"count\":" + timer.count()
+                        + ",\"totalSeconds\":" + timer.totalTime(TimeUnit.SECONDS)
+                        + ",\"maxSeconds\":" + timer.max(TimeUnit.SECONDS));
+            } else if (meter instanceof Counter) {
+                out.write(",\"type\":\"counter\",\"value\":" + number(((Counter) meter).count()));
+            } else if (meter instanceof Gauge) {
+                out.write(",\"type\":\"gauge\",\"value\":" + number(((Gauge) meter).value()));
+            }
+            out.write('}');
+        }
+        out.write("\n]}\n");
+    }
+
+    // Meters are sorted by name, so all meters of one metric family are written together
+    private static void writePrometheus(List<Meter> meters, Writer out) throws IOException {
+        Map<String, List<Meter>> families = new LinkedHashMap<>();
+        for (Meter meter : meters) {
+            families.computeIfAbsent(meter.getId().getName().replace('.', '_'), n -> new ArrayList<>()).add(meter);
+        }
+        for (Map.Entry<String, List<Meter>> family : families.entrySet()) {
+            String name = family.getKey();
+            List<Meter> members = family.getValue();
+            if (members.get(0) instanceof Timer) {
+                out.write("# TYPE " + name + "_seconds summary\n");
+                for (Meter meter : members) {
+                    Timer timer = (Timer) meter;
+                    String labels = labels(meter.getId().getTags());
+                    out.write(name + "_seconds_count" + labels + " " + timer.count() + "\n");
+                    out.write(name + "_seconds_sum" + labels + " " + timer.totalTime(TimeUnit.SECONDS) + "\n");
+                }
+                out.write("# TYPE " + name + "_seconds_max gauge\n");
+                for (Meter meter : members) {
+                    out.write(name + "_seconds_max" + labels(meter.getId().getTags()) + " " + ((Timer) meter).max(TimeUnit.SECONDS) + "\n");
+                }
+            } else if (members.get(0) instanceof Counter) {
+                out.write("# TYPE " + name + "_total counter\n");
+                for (Meter meter : members) {
+                    out.write(name + "_total" + labels(meter.getId().getTags()) + " " + number(((Counter) meter).count()) + "\n");
+                }
+            } else if (members.get(0) instanceof Gauge) {
+                out.write("# TYPE " + name + " gauge\n");
+                for (Meter meter : members) {
+                    out.write(name + labels(meter.getId().getTags()) + " " + number(((Gauge) meter).value()) + "\n");
+                }
+            }
+        }
+    }
+
+    private static String labels(List<Tag> tags) {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        StringBuilder labels = new StringBuilder("{");
+        for (Tag tag : tags) {
+            if (labels.length() > 1) labels.append(',');
+            labels.append(tag.getKey().replaceAll("[^A-Za-z0-9_]", "_")).append("=\"")
+                    .append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    // Whole numbers without a fraction; NaN and infinity, which JSON cannot hold, as 0
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "0";
+        }
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Searches the index written by {@link SearchIndexWriter} for action=search. Segments are memory-mapped
+ * and read in place; the term dictionary of each segment is binary searched, so opening the index and
+ * answering a query touches only the pages of the query's terms.
+ * <p>
+ * A query is a list of terms and "quoted phrases"; a word that tokenizes into several tokens
+ * (e.g. org.springframework) is a phrase as well. A rule matches if it contains every term and phrase.
+ * Matches are ranked with BM25 (k1 = 1.2, b = 0.75), phrases scored like terms, using the document
+ * frequencies and average document length of the whole index.
+ */
+class SearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final long docCount;
+    private final double averageLength;
+
+    private SearchIndex(List<Segment> segments) {
+        this.segments.addAll(segments);
+        long docs = 0;
+        long length = 0;
+        for (Segment segment : segments) {
+            docs += segment.docCount;
+            length += segment.totalLength;
+        }
+        this.docCount = docs;
+        this.averageLength = docs == 0 ? 0 : (double) length / docs;
+    }
+
+    /** Maps all segments of an index directory. */
+    static SearchIndex open(File indexDir) throws IOException {
+        File[] files = indexDir.listFiles((dir, name) -> name.endsWith(SearchIndexWriter.SEGMENT_SUFFIX));
+        if (files == null) {
+            throw new IOException("No search index in " + indexDir + ", run extract with index=true first");
+        }
+        Arrays.sort(files);
+        List<Segment> segments = new ArrayList<>();
+        for (File file : files) {
+            segments.add(new Segment(file));
+        }
+        return new SearchIndex(segments);
+    }
+
+    long getDocCount() {
+        return docCount;
+    }
+
+    /** Parses a query into clauses, each the token list of a term (one token) or a phrase. */
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1) {
+                addClause(clauses, parts[i]);
+            } else {
+                for (String word : parts[i].trim().split("\\s+")) {
+                    addClause(clauses, word);
+                }
+            }
+        }
+        return clauses;
+    }
+
+    private static void addClause(List<List<String>> clauses, String text) {
+        List<String> tokens = new ArrayList<>();
+        SearchIndexWriter.tokenize(text, tokens::add);
+        if (!tokens.isEmpty()) {
+            clauses.add(tokens);
+        }
+    }
+
+    /** Returns the limit best matching rules, best first. */
+    List<Hit> search(String query, int limit) {
+        List<List<String>> clauses = parseQuery(query);
+        if (clauses.isEmpty()) {
+            return List.of();
+        }
+        // Term frequencies per clause and segment, then document frequencies over the whole index
+        List<List<Map<Integer, Integer>>> matches = new ArrayList<>();
+        double[] idf = new double[clauses.size()];
+        for (int c = 0; c < clauses.size(); c++) {
+            List<Map<Integer, Integer>> perSegment = new ArrayList<>();
+            long df = 0;
+            for (Segment segment : segments) {
+                Map<Integer, Integer> tf = segment.match(clauses.get(c));
+                df += tf.size();
+                perSegment.add(tf);
+            }
+            matches.add(perSegment);
+            idf[c] = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble((Hit h) -> h.score));
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            Map<Integer, Integer> first = matches.get(0).get(s);
+            for (int doc : first.keySet()) {
+                double score = 0;
+                for (int c = 0; c < clauses.size() && score >= 0; c++) {
+                    Integer tf = matches.get(c).get(s).get(doc);
+                    if (tf == null) {
+                        score = -1;
+                    } else {
+                        double norm = K1 * (1 - B + B * segment.docLength(doc) / averageLength);
+                        score += idf[c] * tf * (K1 + 1) / (tf + norm);
+                    }
+                }
+                if (score >= 0 && (best.size() < limit || score > best.peek().score)) {
+                    best.add(new Hit(segment, doc, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble((Hit h) -> -h.score));
+        return hits;
+    }
+
+    static class Hit {
+        private final Segment segment;
+        private final int doc;
+        final double score;
+
+        private Hit(Segment segment, int doc, double score) {
+            this.segment = segment;
+            this.doc = doc;
+            this.score = score;
+        }
+
+        String getRuleset() {
+            return segment.rulesetName;
+        }
+
+        String getRuleId() {
+            return segment.string(segment.docsOffset + doc * 12 + 4);
+        }
+
+        String getSnippet() {
+            return segment.string(segment.docsOffset + doc * 12 + 8);
+        }
+    }
+
+    /** One mapped segment file, see {@link SearchIndexWriter} for the layout. */
+    private static class Segment {
+
+        private final MappedByteBuffer buffer;
+        private final int docCount;
+        private final long totalLength;
+        private final int termCount;
+        private final String rulesetName;
+        private final int docsOffset;
+        private final int stringsOffset;
+        private final int termsOffset;
+        private final int termBytesOffset;
+        private final int postingsOffset;
+
+        Segment(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.getInt(0) != SearchIndexWriter.MAGIC || buffer.getInt(4) != SearchIndexWriter.VERSION) {
+                throw new IOException(file + " is not a search index segment of version " + SearchIndexWriter.VERSION);
+            }
+            docCount = buffer.getInt(16);
+            totalLength = buffer.getLong(20);
+            termCount = buffer.getInt(28);
+            int nameLength = buffer.getInt(32);
+            rulesetName = decode(36, nameLength);
+            docsOffset = 36 + nameLength;
+            int stringsSize = buffer.getInt(docsOffset + docCount * 12);
+            stringsOffset = docsOffset + docCount * 12 + 4;
+            termsOffset = stringsOffset + stringsSize;
+            int termBytesSize = buffer.getInt(termsOffset + termCount * 8);
+            termBytesOffset = termsOffset + termCount * 8 + 4;
+            postingsOffset = termBytesOffset + termBytesSize + 4;
+        }
+
+        int docLength(int doc) {
+            return buffer.getInt(docsOffset + doc * 12);
+        }
+
+        // String referenced by the int at position, relative to the strings area
+        String string(int position) {
+            int offset = stringsOffset + buffer.getInt(position);
+            return decode(offset + 4, buffer.getInt(offset));
+        }
+
+        private String decode(int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Absolute position of the postings of term, or -1 if the segment does not contain it. */
+        int findTerm(byte[] term) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int offset = termBytesOffset + buffer.getInt(termsOffset + mid * 8);
+                int cmp = compare(offset + 4, buffer.getInt(offset), term);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return postingsOffset + buffer.getInt(termsOffset + mid * 8 + 4);
+                }
+            }
+            return -1;
+        }
+
+        private int compare(int offset, int length, byte[] term) {
+            int n = Math.min(length, term.length);
+            for (int i = 0; i < n; i++) {
+                int cmp = Byte.compareUnsigned(buffer.get(offset + i), term[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(length, term.length);
+        }
+
+        /** Documents containing the phrase (a single token is a one-word phrase), with their phrase counts. */
+        Map<Integer, Integer> match(List<String> phrase) {
+            int[] postings = new int[phrase.size()];
+            for (int i = 0; i < postings.length; i++) {
+                postings[i] = findTerm(phrase.get(i).getBytes(StandardCharsets.UTF_8));
+                if (postings[i] < 0) {
+                    return Map.of();
+                }
+            }
+            Map<Integer, Integer> result = new HashMap<>();
+            // Position lists of the following tokens by document
+            List<Map<Integer, int[]>> following = new ArrayList<>();
+            for (int i = 1; i < postings.length; i++) {
+                following.add(positionsByDoc(postings[i]));
+            }
+            int position = postings[0];
+            int df = buffer.getInt(position);
+            position += 4;
+            for (int d = 0; d < df; d++) {
+                int doc = buffer.getInt(position);
+                int tf = buffer.getInt(position + 4);
+                position += 8;
+                int count = 0;
+                for (int p = 0; p < tf; p++) {
+                    int start = buffer.getInt(position + p * 4);
+                    boolean matches = true;
+                    for (int i = 0; i < following.size() && matches; i++) {
+                        int[] positions = following.get(i).get(doc);
+                        matches = positions != null && Arrays.binarySearch(positions, start + i + 1) >= 0;
+                    }
+                    if (matches) {
+                        count++;
+                    }
+                }
+                position += tf * 4;
+                if (count > 0) {
+                    result.put(doc, count);
+                }
+            }
+            return result;
+        }
+
+        private Map<Integer, int[]> positionsByDoc(int position) {
+            Map<Integer, int[]> result = new HashMap<>();
+            int df = buffer.getInt(position);
+            position += 4;
+            ByteBuffer view = buffer.duplicate();
+            for (int d = 0; d < df; d++) {
+                int doc = buffer.getInt(position);
+                int[] positions = new int[buffer.getInt(position + 4)];
+                view.position(position + 8);
+                view.asIntBuffer().get(positions);
+                position += 8 + positions.length * 4;
+                result.put(doc, positions);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Writes the full-text index searched by {@link SearchIndex}: one segment file per ruleset directory in
+ * appcat-ruleset.index next to the output files. Each rule is one document made of the tokens of its
+ * description/message followed by the tokens of its serialized when condition. A segment is only rewritten
+ * when the fingerprint of its ruleset's text changed, and segments of removed directories are deleted in
+ * {@link #finish()}, so updating the index after a change costs as much as the changed rulesets.
+ * <p>
+ * Segment layout, big-endian, designed to be memory-mapped and read in place:
+ * <pre>
+ * int magic "ACSI", int version, long fingerprint
+ * int docCount, long totalLength (sum of document lengths in tokens), int termCount
+ * string ruleset name
+ * docs       docCount x (int length, int ruleID offset, int snippet offset)   offsets into strings
+ * strings    int size, size bytes of (int length, UTF-8 bytes)
+ * terms      termCount x (int term offset, int postings offset), sorted by the terms' UTF-8 bytes
+ * termBytes  int size, size bytes of (int length, UTF-8 bytes)
+ * postings   int size, per term: int docFrequency, docFrequency x (int doc, int tf, tf x int position)
+ * </pre>
+ * Not thread-safe.
+ */
+class SearchIndexWriter {
+
+    static final String INDEX_DIR = "appcat-ruleset.index";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final int MAGIC = 0x41435349;
+    static final int VERSION = 1;
+    // Positions of the when tokens start after this gap, so phrases never span description and when
+    static final int FIELD_GAP = 16;
+    private static final int SNIPPET_LENGTH = 120;
+
+    private final File indexDir;
+    private final Set<String> segments = new HashSet<>();
+    private int written;
+    private int unchanged;
+
+    SearchIndexWriter(File indexDir) throws IOException {
+        this.indexDir = indexDir;
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            throw new IOException("Could not create index directory " + indexDir);
+        }
+    }
+
+    /** Splits text into lower-cased runs of letters and digits. */
+    static void tokenize(CharSequence text, Consumer<String> tokens) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.accept(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    /** Adds or updates the segment of one ruleset directory. */
+    void add(File subDir, ParsedRuleset ruleset) {
+        String name = segmentName(subDir.getName());
+        segments.add(name);
+        File file = new File(indexDir, name);
+        long fingerprint = fingerprint(ruleset);
+        try {
+            if (file.isFile() && readFingerprint(file) == fingerprint) {
+                unchanged++;
+                return;
+            }
+            File tmpFile = new File(indexDir, name + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+                out.write(buildSegment(ruleset, fingerprint));
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            written++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Deletes the segments of ruleset directories that were not added. */
+    void finish() {
+        File[] files = indexDir.listFiles((dir, fileName) -> fileName.endsWith(SEGMENT_SUFFIX));
+        int deleted = 0;
+        for (File file : files != null ? files : new File[0]) {
+            if (!segments.contains(file.getName()) && file.delete()) {
+                deleted++;
+            }
+        }
+        System.out.println("Search index: " + written + " segment(s) written, " + unchanged + " unchanged, "
+                + deleted + " deleted");
+    }
+
+    // Directory name made safe for a file name, plus its hash so different names never share a segment
+    static String segmentName(String dirName) {
+        return dirName.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + Integer.toHexString(dirName.hashCode()) + SEGMENT_SUFFIX;
+    }
+
+    // 64-bit FNV-1a over the indexed text of all rules
+    private static long fingerprint(ParsedRuleset ruleset) {
+        long hash = 0xcbf29ce484222325L ^ VERSION;
+        hash = fnv(hash, ruleset.name);
+        for (RuleData rule : ruleset.rules) {
+            hash = fnv(hash, rule.ruleId);
+            hash = fnv(hash, rule.mergedDescription);
+            hash = fnv(hash, rule.when);
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xFFFF) * 0x100000001b3L;
+    }
+
+    private static long readFingerprint(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION ? in.readLong() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] buildSegment(ParsedRuleset ruleset, long fingerprint) throws IOException {
+        List<RuleData> rules = ruleset.rules;
+        Map<String, Postings> postings = new HashMap<>();
+        int[] docLengths = new int[rules.size()];
+        long totalLength = 0;
+        for (int doc = 0; doc < rules.size(); doc++) {
+            RuleData rule = rules.get(doc);
+            int[] position = {0};
+            int currentDoc = doc;
+            Consumer<String> indexer = token -> postings.computeIfAbsent(token, t -> new Postings()).add(currentDoc, position[0]++);
+            tokenize(rule.mergedDescription, indexer);
+            docLengths[doc] = position[0];
+            position[0] += FIELD_GAP;
+            int whenStart = position[0];
+            tokenize(rule.when, indexer);
+            docLengths[doc] += position[0] - whenStart;
+            totalLength += docLengths[doc];
+        }
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringsOut = new DataOutputStream(strings);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+        out.writeInt(rules.size());
+        out.writeLong(totalLength);
+        out.writeInt(postings.size());
+        writeString(out, ruleset.name);
+        for (int doc = 0; doc < rules.size(); doc++) {
+            out.writeInt(docLengths[doc]);
+            out.writeInt(stringsOut.size());
+            writeString(stringsOut, rules.get(doc).ruleId);
+            out.writeInt(stringsOut.size());
+            writeString(stringsOut, snippet(rules.get(doc).mergedDescription));
+        }
+        out.writeInt(stringsOut.size());
+        strings.writeTo(out);
+
+        List<byte[]> terms = new ArrayList<>(postings.size());
+        Map<String, byte[]> termBytes = new HashMap<>();
+        for (String term : postings.keySet()) {
+            byte[] utf8 = term.getBytes(StandardCharsets.UTF_8);
+            termBytes.put(term, utf8);
+            terms.add(utf8);
+        }
+        terms.sort(Arrays::compareUnsigned);
+        ByteArrayOutputStream termArea = new ByteArrayOutputStream();
+        DataOutputStream termOut = new DataOutputStream(termArea);
+        ByteArrayOutputStream postingArea = new ByteArrayOutputStream();
+        DataOutputStream postingOut = new DataOutputStream(postingArea);
+        for (byte[] term : terms) {
+            out.writeInt(termOut.size());
+            out.writeInt(postingOut.size());
+            termOut.writeInt(term.length);
+            termOut.write(term);
+            postings.get(new String(term, StandardCharsets.UTF_8)).writeTo(postingOut);
+        }
+        out.writeInt(termOut.size());
+        termArea.writeTo(out);
+        out.writeInt(postingOut.size());
+        postingArea.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String snippet(String text) {
+        if (text == null) {
+            return "";
+        }
+        int end = text.indexOf('\n');
+        end = end < 0 ? text.length() : end;
+        return text.substring(0, Math.min(end, SNIPPET_LENGTH));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /** Documents, term frequencies and positions of one term, filled in document order. */
+    private static class Postings {
+        private int[] docs = new int[2];
+        private int[] tfs = new int[2];
+        private int docCount;
+        private int[] positions = new int[4];
+        private int positionCount;
+
+        void add(int doc, int position) {
+            if (docCount == 0 || docs[docCount - 1] != doc) {
+                if (docCount == docs.length) {
+                    docs = Arrays.copyOf(docs, docCount * 2);
+                    tfs = Arrays.copyOf(tfs, docCount * 2);
+                }
+                docs[docCount] = doc;
+                tfs[docCount++] = 0;
+            }
+            tfs[docCount - 1]++;
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, positionCount * 2);
+            }
+            positions[positionCount++] = position;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(docCount);
+            int p = 0;
+            for (int d = 0; d < docCount; d++) {
+                out.writeInt(docs[d]);
+                out.writeInt(tfs[d]);
+                for (int i = 0; i < tfs[d]; i++) {
+                    out.writeInt(positions[p++]);
+                }
+            }
+        }
+    }
+}
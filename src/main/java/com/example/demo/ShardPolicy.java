@@ -0,0 +1,130 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How rulesets are assigned to shards, parsed from the shard=&lt;policy&gt; option:
+ * <ul>
+ *   <li>group: one shard per ruleset family, the ruleset name up to the first '/' without trailing
+ *       version digits, so openjdk11 and openjdk17 share appcat-ruleset-shard-openjdk.xlsx</li>
+ *   <li>rows:&lt;n&gt;: consecutive rulesets up to n rows per shard</li>
+ *   <li>bytes:&lt;n&gt;[k|m]: consecutive rulesets up to about n bytes of cell text per shard</li>
+ * </ul>
+ * A ruleset larger than the limit gets a shard of its own. Size shards are numbered appcat-ruleset-shard-001.xlsx, ...
+ */
+public class ShardPolicy {
+
+    static final String GROUP = "group";
+    static final String ROWS = "rows";
+    static final String BYTES = "bytes";
+    // Title and description rows of every sheet
+    private static final int HEADER_ROWS = 2;
+
+    private final String mode;
+    private final long limit;
+
+    private ShardPolicy(String mode, long limit) {
+        this.mode = mode;
+        this.limit = limit;
+    }
+
+    /** Parses a policy, throws IllegalArgumentException if it is not one of the forms above. */
+    public static ShardPolicy parse(String policy) {
+        String value = policy.trim().toLowerCase(Locale.ROOT);
+        if (value.equals(GROUP)) {
+            return new ShardPolicy(GROUP, 0);
+        }
+        int colon = value.indexOf(':');
+        String mode = colon < 0 ? value : value.substring(0, colon);
+        if (colon < 0 || !(mode.equals(ROWS) || mode.equals(BYTES))) {
+            throw new IllegalArgumentException("Unknown shard policy '" + policy + "'. Use group, rows:<n> or bytes:<n>[k|m]");
+        }
+        String size = value.substring(colon + 1);
+        long factor = 1;
+        if (mode.equals(BYTES) && (size.endsWith("k") || size.endsWith("m"))) {
+            factor = size.endsWith("k") ? 1024 : 1024 * 1024;
+            size = size.substring(0, size.length() - 1);
+        }
+        long limit;
+        try {
+            limit = Long.parseLong(size) * factor;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Shard size must be a number: " + policy);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Shard size must be greater than 0: " + policy);
+        }
+        return new ShardPolicy(mode, limit);
+    }
+
+    /** Shard file names with the indexes of their rulesets, in the order of the rulesets. */
+    Map<String, List<Integer>> partition(RuleStore store) {
+        Map<String, List<Integer>> shards = new LinkedHashMap<>();
+        if (mode.equals(GROUP)) {
+            for (int ruleset = 0; ruleset < store.getRulesetCount(); ruleset++) {
+                shards.computeIfAbsent(ShardedXlsxRuleStoreWriter.SHARD_PREFIX + group(store.getRulesetName(ruleset)) + ".xlsx", k -> new ArrayList<>())
+                        .add(ruleset);
+            }
+            return shards;
+        }
+        List<Integer> current = null;
+        long used = 0;
+        for (int ruleset = 0; ruleset < store.getRulesetCount(); ruleset++) {
+            long size = mode.equals(ROWS) ? rows(store, ruleset) : bytes(store, ruleset);
+            if (current == null || (used + size > limit && !current.isEmpty())) {
+                current = new ArrayList<>();
+                shards.put(String.format("%s%03d.xlsx", ShardedXlsxRuleStoreWriter.SHARD_PREFIX, shards.size() + 1), current);
+                used = 0;
+            }
+            current.add(ruleset);
+            used += size;
+        }
+        return shards;
+    }
+
+    static String group(String rulesetName) {
+        String name = rulesetName == null ? "" : rulesetName.toLowerCase(Locale.ROOT);
+        int slash = name.indexOf('/');
+        if (slash >= 0) {
+            name = name.substring(0, slash);
+        }
+        int end = name.length();
+        while (end > 0 && (Character.isDigit(name.charAt(end - 1)) || "-_. ".indexOf(name.charAt(end - 1)) >= 0)) {
+            end--;
+        }
+        name = name.substring(0, end).replaceAll("[^a-z0-9._-]", "_");
+        // "index" would be the index workbook's file name
+        return name.isEmpty() ? "other" : name.equals("index") ? "index_" : name;
+    }
+
+    private static long rows(RuleStore store, int ruleset) {
+        return HEADER_ROWS + store.getFirstRule(ruleset + 1) - store.getFirstRule(ruleset);
+    }
+
+    // Cell text of the ruleset's rules, a stable estimate of its share of the file
+    private static long bytes(RuleStore store, int ruleset) {
+        long bytes = length(store.getRulesetName(ruleset)) + length(store.getRulesetDescription(ruleset));
+        for (int r = store.getFirstRule(ruleset); r < store.getFirstRule(ruleset + 1); r++) {
+            for (int field = 0; field < RuleStore.TEXT_FIELDS; field++) {
+                bytes += Math.max(0, store.getTextLength(r, field));
+            }
+            for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                bytes += length(store.getLabel(r, field));
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return mode.equals(GROUP) ? GROUP : mode + ":" + limit;
+    }
+}
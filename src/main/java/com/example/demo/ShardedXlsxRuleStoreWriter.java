@@ -0,0 +1,188 @@
+package com.example.demo;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Writes the xlsx output as several workbooks (shards) plus an index workbook, for rule catalogs too large
+ * to open as one file. Rulesets are assigned to shards by a {@link ShardPolicy}; a ruleset is never split, so
+ * every shard has the same sheets the single workbook would have for its rulesets. Shards are written
+ * concurrently, each with its own workbook, and the index workbook (appcat-ruleset-index.xlsx) lists every
+ * ruleset with its shard file, sheet and rule count, linked to the shard file. Each shard is written to a
+ * temporary file and only moved into place once every shard was written, so a failed run leaves the shards of
+ * the earlier run intact. Shard files of an earlier run (appcat-ruleset-shard-*.xlsx) that were not written
+ * again are deleted after that, and the index is written last.
+ */
+class ShardedXlsxRuleStoreWriter implements RuleStoreWriter {
+
+    static final String INDEX_FILE = "appcat-ruleset-index.xlsx";
+    // Only shard files start with this, so the cleanup of stale shards never matches other outputs
+    static final String SHARD_PREFIX = "appcat-ruleset-shard-";
+    private static final List<String> INDEX_COLUMNS = List.of("Ruleset", "File", "Sheet", "Rules");
+
+    private final int rowWindow;
+    private final ShardPolicy shardPolicy;
+
+    ShardedXlsxRuleStoreWriter(int rowWindow, ShardPolicy shardPolicy) {
+        this.rowWindow = rowWindow;
+        this.shardPolicy = shardPolicy;
+    }
+
+    @Override
+    public String getFileName() {
+        return INDEX_FILE;
+    }
+
+    @Override
+    public void write(RuleStore store, File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        Map<String, List<Integer>> shards = shardPolicy.partition(store);
+        List<String> shardFiles = new ArrayList<>(shards.keySet());
+        List<List<String>> sheetNames = new ArrayList<>();
+        List<File> tmpFiles = new ArrayList<>();
+
+        int writers = Math.max(1, Math.min(shards.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (Map.Entry<String, List<Integer>> shard : shards.entrySet()) {
+                File tmpFile = new File(dir, shard.getKey() + ".tmp");
+                tmpFiles.add(tmpFile);
+                futures.add(pool.submit(() -> RunMetrics.trackAllocations(() -> writeShard(store, shard.getValue(), tmpFile))));
+            }
+            for (Future<List<String>> future : futures) {
+                sheetNames.add(await(future));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            // The other shards may still be writing, let them stop before their files are removed
+            pool.shutdownNow();
+            awaitTermination(pool);
+            deleteTmpFiles(tmpFiles);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        for (int i = 0; i < shardFiles.size(); i++) {
+            Files.move(tmpFiles.get(i).toPath(), new File(dir, shardFiles.get(i)).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        deleteStaleShards(dir, shardFiles);
+        writeIndex(store, shards, sheetNames, file);
+        System.out.println("Wrote " + shards.size() + " workbook shard(s) (" + shardPolicy + ")");
+    }
+
+    // Writes one shard and returns the sheet name of each of its rulesets
+    private List<String> writeShard(RuleStore store, List<Integer> rulesets, File file) {
+        Workbook workbook = WorkbookCells.newWorkbook(rowWindow);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            WorkbookCells cells = new WorkbookCells(workbook);
+            List<String> names = new ArrayList<>();
+            for (int ruleset : rulesets) {
+                RulesetToExcel.writeRulesetSheet(cells, store.toParsedRuleset(ruleset), store.getClassifierTitles());
+                names.add(workbook.getSheetName(workbook.getNumberOfSheets() - 1));
+            }
+            long writeStart = System.nanoTime();
+            workbook.write(fos);
+            fos.flush();
+            RunMetrics.WORKBOOK_WRITE.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
+            return names;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                workbook.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+
+    private static List<String> await(Future<List<String>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing workbook shards", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService pool) {
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteTmpFiles(List<File> tmpFiles) {
+        for (File tmpFile : tmpFiles) {
+            if (tmpFile.isFile() && !tmpFile.delete()) {
+                System.err.println("Could not delete " + tmpFile);
+            }
+        }
+    }
+
+    private static void deleteStaleShards(File dir, List<String> written) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SHARD_PREFIX) && name.endsWith(".xlsx")
+                && !written.contains(name));
+        for (File stale : files != null ? files : new File[0]) {
+            if (!stale.delete()) {
+                System.err.println("Could not delete stale shard " + stale);
+            }
+        }
+    }
+
+    private static void writeIndex(RuleStore store, Map<String, List<Integer>> shards, List<List<String>> sheetNames,
+                                   File file) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream fos = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Index");
+            CreationHelper helper = workbook.getCreationHelper();
+            Row titleRow = sheet.createRow(0);
+            for (int i = 0; i < INDEX_COLUMNS.size(); i++) {
+                titleRow.createCell(i).setCellValue(INDEX_COLUMNS.get(i));
+            }
+            int rowNum = 1;
+            int shard = 0;
+            for (Map.Entry<String, List<Integer>> entry : shards.entrySet()) {
+                List<String> names = sheetNames.get(shard++);
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    int ruleset = entry.getValue().get(i);
+                    Row row = sheet.createRow(rowNum++);
+                    row.createCell(0).setCellValue(store.getRulesetName(ruleset));
+                    Cell fileCell = row.createCell(1);
+                    fileCell.setCellValue(entry.getKey());
+                    Hyperlink link = helper.createHyperlink(HyperlinkType.FILE);
+                    link.setAddress(entry.getKey());
+                    fileCell.setHyperlink(link);
+                    row.createCell(2).setCellValue(names.get(i));
+                    row.createCell(3).setCellValue(store.getFirstRule(ruleset + 1) - store.getFirstRule(ruleset));
+                }
+            }
+            sheet.setColumnWidth(0, 40 * 256);
+            sheet.setColumnWidth(1, 40 * 256);
+            sheet.setColumnWidth(2, 32 * 256);
+            sheet.setColumnWidth(3, 10 * 256);
+            workbook.write(fos);
+        }
+    }
+}
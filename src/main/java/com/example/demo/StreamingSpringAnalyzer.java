@@ -0,0 +1,174 @@
+package com.example.demo;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming variant of action=analyze-spring.
+ * The sheets of appcat-ruleset.xlsx are read with POI's event API (XSSFReader + SAX), one row at a time,
+ * and the annotated copy is written through an SXSSF workbook, so neither side holds the whole
+ * workbook in memory. Column widths are set to the widths extract uses instead of measuring cell
+ * text with autoSizeColumn. The "spring specific?" column, or one column per configured classifier,
+ * is added or reused as in {@link RulesetToExcel#recognizeSpringRules(String, int, RuleClassifier)}.
+ */
+class StreamingSpringAnalyzer {
+
+    private StreamingSpringAnalyzer() {
+    }
+
+    static void recognizeSpringRules(String outputPath, int rowWindow, RuleClassifier classifier) {
+        File excelFile = new File(outputPath, "appcat-ruleset.xlsx");
+        File tmpFile = new File(outputPath, "appcat-ruleset.xlsx.tmp");
+        try {
+            long readStart = System.nanoTime();
+            OPCPackage pkg = OPCPackage.open(excelFile, PackageAccess.READ);
+            try (SXSSFWorkbook out = new SXSSFWorkbook(rowWindow)) {
+                try {
+                    XSSFReader reader = new XSSFReader(pkg);
+                    ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                    StylesTable styles = reader.getStylesTable();
+                    CellStyle wrapStyle = out.createCellStyle();
+                    wrapStyle.setWrapText(true);
+                    DataFormatter formatter = new DataFormatter();
+                    RunMetrics.ANALYZE_READ.record(System.nanoTime() - readStart, TimeUnit.NANOSECONDS);
+
+                    // Sheets are read and classified row by row, both count as classify time
+                    long classifyStart = System.nanoTime();
+                    XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                    while (sheets.hasNext()) {
+                        try (InputStream sheetData = sheets.next()) {
+                            Sheet sheet = out.createSheet(sheets.getSheetName());
+                            AnalyzingSheetHandler handler = new AnalyzingSheetHandler(sheet, wrapStyle, classifier);
+                            XMLReader parser = XMLHelper.newXMLReader();
+                            parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, handler, formatter, false));
+                            parser.parse(new InputSource(sheetData));
+                            handler.setColumnWidths();
+                        }
+                    }
+                    RunMetrics.ANALYZE_CLASSIFY.record(System.nanoTime() - classifyStart, TimeUnit.NANOSECONDS);
+                    long writeStart = System.nanoTime();
+                    try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+                        out.write(fos);
+                        fos.flush();
+                    }
+                    RunMetrics.ANALYZE_WRITE.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
+                } finally {
+                    out.dispose();
+                }
+            } finally {
+                // Opened read-only, revert closes the package without writing to it, close would try to save it
+                pkg.revert();
+            }
+            Files.move(tmpFile.toPath(), excelFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Analyze completed and Excel updated.");
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            e.printStackTrace();
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Copies the rows of one sheet into the output sheet, adding the classifier results to every
+     * rule row. Row 0 is the ruleset description, row 1 the column titles, rules follow.
+     */
+    private static class AnalyzingSheetHandler implements SheetContentsHandler {
+
+        private final Sheet sheet;
+        private final CellStyle wrapStyle;
+        private final RuleClassifier classifier;
+        private final List<String> cells = new ArrayList<>();
+        private RuleClassifier.SheetClassifier sheetClassifier;
+        private int[] resultCols;
+        private int lastCol;
+        private int currentCol;
+
+        AnalyzingSheetHandler(Sheet sheet, CellStyle wrapStyle, RuleClassifier classifier) {
+            this.sheet = sheet;
+            this.wrapStyle = wrapStyle;
+            this.classifier = classifier;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            currentCol = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : currentCol + 1;
+            while (cells.size() < col) {
+                cells.add(null);
+            }
+            cells.add(formattedValue);
+            currentCol = col;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 1) {
+                sheetClassifier = classifier.forColumns(new ArrayList<>(cells));
+                resultCols = RulesetToExcel.resolveResultColumns(cells, classifier.getColumnTitles());
+                for (int k = 0; k < resultCols.length; k++) {
+                    setCell(resultCols[k], classifier.getColumnTitles().get(k));
+                }
+            } else if (rowNum > 1 && sheetClassifier != null) {
+                long result = sheetClassifier.classify(cells);
+                for (int k = 0; k < resultCols.length; k++) {
+                    setCell(resultCols[k], (result & (1L << k)) != 0 ? "Yes" : "No");
+                }
+            }
+            lastCol = Math.max(lastCol, cells.size());
+
+            Row row = sheet.createRow(rowNum);
+            for (int c = 0; c < cells.size(); c++) {
+                if (cells.get(c) != null) {
+                    Cell cell = row.createCell(c);
+                    cell.setCellValue(cells.get(c));
+                    cell.setCellStyle(wrapStyle);
+                }
+            }
+        }
+
+        private void setCell(int col, String value) {
+            while (cells.size() <= col) {
+                cells.add(null);
+            }
+            cells.set(col, value);
+        }
+
+        // Same widths as extract: RuleID=20, When=50, Description & Message=100, everything else 20
+        void setColumnWidths() {
+            for (int c = 0; c < lastCol; c++) {
+                int width = c == 1 ? 50 : c == 2 ? 100 : 20;
+                sheet.setColumnWidth(c, width * 256);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the same workbook as the direct extract path, one sheet per ruleset. Rules are materialized
+ * one ruleset at a time, and with rowWindow greater than 0 the workbook is a streaming SXSSF workbook.
+ */
+class XlsxRuleStoreWriter implements RuleStoreWriter {
+
+    private final int rowWindow;
+
+    XlsxRuleStoreWriter(int rowWindow) {
+        this.rowWindow = rowWindow;
+    }
+
+    @Override
+    public String getFileName() {
+        return "appcat-ruleset.xlsx";
+    }
+
+    @Override
+    public void write(RuleStore store, File file) throws IOException {
+        Workbook workbook = WorkbookCells.newWorkbook(rowWindow);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            WorkbookCells cells = new WorkbookCells(workbook);
+            for (int i = 0; i < store.getRulesetCount(); i++) {
+                RulesetToExcel.writeRulesetSheet(cells, store.toParsedRuleset(i), store.getClassifierTitles());
+            }
+            long writeStart = System.nanoTime();
+            workbook.write(fos);
+            fos.flush();
+            RunMetrics.WORKBOOK_WRITE.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
+        } finally {
+            workbook.close();
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+}
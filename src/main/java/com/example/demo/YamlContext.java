@@ -0,0 +1,169 @@
+package com.example.demo;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Thread-confined SnakeYAML instances used while extracting rules.
+ * Building a Yaml sets up its representer, resolver and constructor, which is far more expensive than
+ * parsing a small rule file, so every thread keeps one configured loader and one configured dumper and
+ * reuses them for all files and rules. Yaml is not thread-safe, hence one context per thread: the
+ * sequential extract uses the context of the calling thread, parser threads each get their own.
+ * The loader bounds the work a single document can cause: at most MAX_CODE_POINTS characters, MAX_ALIASES
+ * aliases per collection and MAX_NESTING_DEPTH levels of nesting, so an adversarial file fails with a
+ * YAMLException instead of exhausting the heap or the stack. A time budget per file covers what is left: the
+ * extract waits for a file no longer than its budget and cancels the parse, see {@link #startFile(long)} for how
+ * a cancelled parse stops.
+ */
+final class YamlContext {
+
+    // Dump buffers that grew beyond this are dropped instead of being kept for the thread's lifetime
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    // Rule files are a few KB, the largest known ones are well below 1 MB. None of the limits is looser
+    // than the SnakeYAML default, they are set explicitly so a library upgrade cannot widen them
+    static final int MAX_CODE_POINTS = 3 * 1024 * 1024;
+    static final int MAX_ALIASES = 50;
+    static final int MAX_NESTING_DEPTH = 50;
+
+    private static final ThreadLocal<YamlContext> CURRENT = ThreadLocal.withInitial(YamlContext::new);
+
+    private final Yaml loader;
+    private final Yaml dumper;
+    private StringWriter buffer = new StringWriter(1024);
+    // System.nanoTime() after which load and dump fail, see startFile
+    private long deadline;
+    private long timeoutMillis;
+    // Time spent in dump since startFile
+    private long dumpNanos;
+
+    private YamlContext() {
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setCodePointLimit(MAX_CODE_POINTS);
+        loaderOptions.setMaxAliasesForCollections(MAX_ALIASES);
+        loaderOptions.setNestingDepthLimit(MAX_NESTING_DEPTH);
+        loaderOptions.setAllowRecursiveKeys(false);
+        loader = new Yaml(new DeadlineConstructor(loaderOptions), new Representer(new DumperOptions()),
+                new DumperOptions(), loaderOptions, new Resolver());
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setIndent(2);
+        options.setPrettyFlow(true);
+        dumper = new Yaml(options);
+    }
+
+    /** Returns the context of the calling thread. */
+    static YamlContext get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts the time budget of the next file: from now on load and dump throw a YAMLException once
+     * timeoutMillis have passed or the thread is interrupted, which is how a cancelled parse ends. Both are
+     * checked while the loader reads its input, for every node it constructs (so expanding aliases of an
+     * already buffered document is covered too) and before every dump, which is where the time of a file
+     * goes. 0 turns the budget off.
+     */
+    void startFile(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.dumpNanos = 0;
+        this.deadline = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1_000_000 : 0;
+    }
+
+    /** Throws a YAMLException if the budget of the current file is spent or its parse was cancelled. */
+    void checkDeadline() {
+        if (deadline == 0) {
+            return;
+        }
+        if (System.nanoTime() - deadline > 0) {
+            throw new YAMLException("Parse timeout of " + timeoutMillis + " ms exceeded");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new YAMLException("Parse cancelled");
+        }
+    }
+
+    /** Time spent in {@link #dump(Object)} since the last {@link #startFile(long)}. */
+    long getDumpNanos() {
+        return dumpNanos;
+    }
+
+    /** Parses a YAML document, same as {@code new Yaml().load(input)} within the loader limits. */
+    <T> T load(InputStream input) {
+        if (deadline == 0) {
+            return loader.load(input);
+        }
+        return loader.load(new DeadlineReader(new UnicodeReader(input)));
+    }
+
+    /**
+     * Dumps obj in block style with an indent of 2 and returns the trimmed text, same as
+     * {@code new Yaml(options).dump(obj).trim()}, but writes into a reused buffer and only
+     * allocates the resulting string.
+     */
+    String dump(Object obj) {
+        checkDeadline();
+        long dumpStart = System.nanoTime();
+        StringBuffer out = buffer.getBuffer();
+        out.setLength(0);
+        dumper.dump(obj, buffer);
+
+        int start = 0;
+        int end = out.length();
+        while (start < end && out.charAt(start) <= ' ') start++;
+        while (end > start && out.charAt(end - 1) <= ' ') end--;
+        String result = out.substring(start, end);
+
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            buffer = new StringWriter(1024);
+        }
+        dumpNanos += System.nanoTime() - dumpStart;
+        return result;
+    }
+
+    // Checks the budget of the current file for every node built from the composed document
+    private class DeadlineConstructor extends Constructor {
+
+        DeadlineConstructor(LoaderOptions loaderOptions) {
+            super(loaderOptions);
+        }
+
+        @Override
+        protected Object constructObject(Node node) {
+            checkDeadline();
+            return super.constructObject(node);
+        }
+    }
+
+    // Checks the budget of the current file whenever the loader asks for more input
+    private class DeadlineReader extends Reader {
+        private final Reader in;
+
+        DeadlineReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            checkDeadline();
+            return in.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColumnarRuleStoreWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void roundTripKeepsNullsNonAsciiTextAndEmptyRulesets() throws IOException {
+        RuleStore store = new RuleStore(List.of("Spring", "Jakarta EE"));
+        store.add(new ParsedRuleset("empty-first", "no rules yet", new ArrayList<>()));
+        RuleData nulls = new RuleData("nulls-00010", null, null, null, null, null, null);
+        RuleData text = new RuleData("text-00020", "java.referenced:\n  pattern: \"org.springframework.*\"",
+                "Überprüfung der Konfiguration — 設定を確認 😀\nsecond line", "spring-boot", "quarkus", "ñandú", "mandatory");
+        text.classification = 0b11;
+        store.add(new ParsedRuleset("rules", null, new ArrayList<>(List.of(nulls, text))));
+        store.add(new ParsedRuleset("empty-middle", "", new ArrayList<>()));
+        RuleData last = new RuleData("", "", "", "", "quarkus", "", "");
+        last.classification = 0b10;
+        store.add(new ParsedRuleset("last", "Letzte Regeln", new ArrayList<>(List.of(last))));
+
+        ColumnarRuleStoreWriter writer = new ColumnarRuleStoreWriter();
+        File file = new File(tempDir, writer.getFileName());
+        writer.write(store, file);
+        RuleStore read = ColumnarRuleStoreWriter.read(file);
+
+        assertEquals(store.getClassifierTitles(), read.getClassifierTitles());
+        assertEquals(4, read.getRulesetCount());
+        assertEquals(3, read.getRuleCount());
+        for (int i = 0; i < store.getRulesetCount(); i++) {
+            assertEquals(store.getRulesetName(i), read.getRulesetName(i));
+            assertEquals(store.getRulesetDescription(i), read.getRulesetDescription(i));
+            assertEquals(store.getFirstRule(i), read.getFirstRule(i));
+            assertEquals(store.getFirstRule(i + 1), read.getFirstRule(i + 1));
+        }
+        assertNull(read.getRulesetDescription(1));
+        for (int r = 0; r < store.getRuleCount(); r++) {
+            assertEquals(store.getRuleset(r), read.getRuleset(r));
+            for (int field = 0; field < RuleStore.TEXT_FIELDS; field++) {
+                assertEquals(store.getTextString(r, field), read.getTextString(r, field));
+            }
+            for (int field = 0; field < RuleStore.LABEL_FIELDS; field++) {
+                assertEquals(store.getLabel(r, field), read.getLabel(r, field));
+            }
+            assertEquals(store.getClassification(r), read.getClassification(r));
+        }
+
+        // Null stays null, the empty string stays empty
+        assertNull(read.getTextString(0, RuleStore.WHEN));
+        assertNull(read.getTextString(0, RuleStore.MESSAGE));
+        assertNull(read.getLabel(0, RuleStore.SOURCE));
+        assertEquals("", read.getTextString(2, RuleStore.RULE_ID));
+        assertEquals("", read.getLabel(2, RuleStore.SOURCE));
+        assertEquals("Überprüfung der Konfiguration — 設定を確認 😀\nsecond line", read.getTextString(1, RuleStore.MESSAGE));
+        assertEquals("ñandú", read.getLabel(1, RuleStore.DOMAIN));
+        // Equal labels are still stored once
+        assertEquals(read.getLabelId(1, RuleStore.TARGET), read.getLabelId(2, RuleStore.TARGET));
+    }
+
+    @Test
+    void roundTripOfEmptyStore() throws IOException {
+        ColumnarRuleStoreWriter writer = new ColumnarRuleStoreWriter();
+        File file = new File(tempDir, writer.getFileName());
+        writer.write(new RuleStore(List.of()), file);
+        RuleStore read = ColumnarRuleStoreWriter.read(file);
+
+        assertEquals(0, read.getRulesetCount());
+        assertEquals(0, read.getRuleCount());
+        assertEquals(List.of(), read.getClassifierTitles());
+    }
+}
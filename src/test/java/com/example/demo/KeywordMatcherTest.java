@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeywordMatcherTest {
+
+    @Test
+    void overlappingAndNestedKeywordsAreAllFound() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("he", "she", "his", "hers"));
+        // "she" ends where "he" ends, "hers" starts inside "she"
+        assertEquals(List.of(1, 0, 3), matches(matcher, "ushers"));
+        assertEquals(List.of(2, 1, 0), matches(matcher, "hishe"));
+        assertEquals(List.of(0, 0), matches(matcher, "hehe"));
+    }
+
+    @Test
+    void keywordThatIsSuffixOfAnotherIsFound() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("spring", "ring"));
+        assertEquals(List.of(0, 1), matches(matcher, "spring"));
+        assertEquals(List.of(1), matches(matcher, "boring"));
+        // A failed match of the longer keyword still finds the shorter one
+        assertEquals(List.of(1), matches(matcher, "sprring"));
+    }
+
+    @Test
+    void textAndKeywordsAreCaseFolded() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("Spring", "properties|", "Überprüfung"));
+        assertEquals(List.of(0), matches(matcher, "org.SPRINGframework"));
+        assertEquals(List.of(1), matches(matcher, "Properties|application"));
+        assertEquals(List.of(2), matches(matcher, "ÜBERPRÜFUNG der Konfiguration"));
+        assertEquals(List.of(2), matches(matcher, "eine überprüfung"));
+    }
+
+    @Test
+    void emptyInputMatchesNothing() {
+        assertEquals(List.of(), matches(new KeywordMatcher(List.of("spring")), ""));
+        assertEquals(List.of(), matches(new KeywordMatcher(List.of()), "spring"));
+        assertThrows(IllegalArgumentException.class, () -> new KeywordMatcher(List.of("spring", "")));
+    }
+
+    @Test
+    void handlerStopsTheScan() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("spring", "boot"));
+        List<Integer> found = new ArrayList<>();
+        matcher.scan("spring boot spring", id -> {
+            found.add(id);
+            return false;
+        });
+        assertEquals(List.of(0), found);
+    }
+
+    private static List<Integer> matches(KeywordMatcher matcher, String text) {
+        List<Integer> found = new ArrayList<>();
+        matcher.scan(text, id -> {
+            found.add(id);
+            return true;
+        });
+        return found;
+    }
+}
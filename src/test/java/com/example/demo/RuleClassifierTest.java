@@ -0,0 +1,94 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RuleClassifierTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void defaultClassifierMatchesSpringAndPropertiesInWhen() {
+        RuleClassifier classifier = RuleClassifier.defaults();
+        assertEquals(List.of("spring"), classifier.getNames());
+        assertEquals(List.of("spring specific?"), classifier.getColumnTitles());
+
+        RuleClassifier.SheetClassifier sheet = classifier.forColumns(RulesetToExcel.RULE_COLUMNS);
+        assertEquals(1L, sheet.classify(rule("java.referenced: {}", "Migrate Spring Boot 2 to 3", null)));
+        assertEquals(1L, sheet.classify(rule("builtin.filecontent: {pattern: \"Properties|yaml\"}", "Check the config", null)));
+        // "properties|" only counts in the When column
+        assertEquals(0L, sheet.classify(rule("java.referenced: {}", "Move the properties| file", null)));
+        assertEquals(1L, sheet.classify(rule(null, null, "spring-boot")));
+        assertEquals(0L, sheet.classify(rule(null, null, null)));
+    }
+
+    @Test
+    void bitOfEveryClassifierFollowsItsPositionInTheFile() throws IOException {
+        File config = new File(tempDir, "classifiers.yaml");
+        Files.writeString(config.toPath(), String.join("\n",
+                "classifiers:",
+                "  - name: spring",
+                "    keywords: [spring]",
+                "  - name: quarkus",
+                "    column: Quarkus?",
+                "    keywords: [quarkus]",
+                "  - name: jakarta-ee",
+                "    keywords: [jakarta., javax.servlet]",
+                "    columnKeywords:",
+                "      Category: [mandatory]",
+                ""), StandardCharsets.UTF_8);
+        RuleClassifier classifier = RuleClassifier.load(config);
+        assertEquals(List.of("spring", "quarkus", "jakarta-ee"), classifier.getNames());
+        assertEquals(List.of("spring specific?", "Quarkus?", "jakarta-ee specific?"), classifier.getColumnTitles());
+
+        RuleClassifier.SheetClassifier sheet = classifier.forColumns(RulesetToExcel.RULE_COLUMNS);
+        assertEquals(0b001L, sheet.classify(rule(null, "Spring", null)));
+        assertEquals(0b010L, sheet.classify(rule(null, null, "quarkus3")));
+        assertEquals(0b110L, sheet.classify(rule("java.referenced: javax.servlet.http", "Quarkus REST", null)));
+        assertEquals(0b111L, sheet.classify(rule("jakarta.ws.rs", "spring quarkus", null)));
+        RuleData mandatory = new RuleData("id", null, null, null, null, null, "mandatory");
+        assertEquals(0b100L, sheet.classify(mandatory));
+        // A column keyword does not count in another column
+        assertEquals(0L, sheet.classify(rule(null, "mandatory", null)));
+    }
+
+    @Test
+    void sheetRowsAreMatchedByColumnTitle() {
+        RuleClassifier.SheetClassifier sheet = RuleClassifier.defaults()
+                .forColumns(Arrays.asList("RuleID", "Spring Specific?", " when ", null));
+        // The result column is not scanned, the When column is found by its title whatever its case
+        assertEquals(0L, sheet.classify(Arrays.asList("id-1", "spring", "java.referenced", null)));
+        assertEquals(1L, sheet.classify(Arrays.asList("id-1", "No", "PROPERTIES|", null)));
+        assertEquals(1L, sheet.classify(Arrays.asList("spring-00010", "No", "", "")));
+
+        // Without a When column the column keyword never matches
+        RuleClassifier.SheetClassifier noWhen = RuleClassifier.defaults().forColumns(List.of("RuleID", "Message"));
+        assertEquals(0L, noWhen.classify(List.of("id-1", "properties|")));
+        assertEquals(0L, noWhen.classify(List.of()));
+    }
+
+    @Test
+    void invalidConfigIsRejected() throws IOException {
+        File config = new File(tempDir, "classifiers.yaml");
+        Files.writeString(config.toPath(), "classifiers:\n  - name: spring\n    keywords: [\"\"]\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> RuleClassifier.load(config));
+        Files.writeString(config.toPath(), "classifiers: []\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> RuleClassifier.load(config));
+    }
+
+    private static RuleData rule(String when, String message, String source) {
+        return new RuleData("id", when, message, source, null, null, null);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParseError;
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RulesetCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @Test
+    void unchangedDirectoryIsReused() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File dir = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(List.of()));
+        cache.save(manifest);
+        assertEquals(1, parses.get());
+
+        // A touched file with the same content is still a hit
+        assertTrue(new File(dir, "rules.yaml").setLastModified(1_000_000_000L));
+        cache = RulesetCache.load(manifest, root);
+        ParsedRuleset ruleset = cache.resolve(scan(dir), parser(List.of()));
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.getReusedCount());
+        assertEquals(0, cache.getParsedCount());
+        assertEquals("spring", ruleset.name);
+        assertEquals("spring-00010", ruleset.rules.get(0).ruleId);
+        assertEquals("java.referenced", ruleset.rules.get(0).providers);
+    }
+
+    @Test
+    void changedFileIsParsedAgain() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File dir = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(List.of()));
+        cache.save(manifest);
+
+        Files.writeString(new File(dir, "rules.yaml").toPath(), "- ruleID: spring-00020", StandardCharsets.UTF_8);
+        cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(List.of()));
+        cache.save(manifest);
+        assertEquals(2, parses.get());
+
+        // So is a directory with a new file
+        writeRuleset(root, "spring", "more-rules.yaml", "- ruleID: spring-00030");
+        cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(List.of()));
+        assertEquals(3, parses.get());
+        assertEquals(0, cache.getReusedCount());
+    }
+
+    @Test
+    void onlyDirectoriesWithMovedFilesAreRead() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File dir = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        writeRuleset(root, "spring", RulesetScanner.RULESET_FILE, "name: spring");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        assertTrue(cache.needsRead(scan(dir)));
+        cache.resolve(scan(dir), parser(List.of()));
+        cache.save(manifest);
+
+        cache = RulesetCache.load(manifest, root);
+        assertFalse(cache.needsRead(scan(dir)));
+
+        // A touched file has to be read to be hashed, the prefetched bytes are hashed instead of the file
+        assertTrue(new File(dir, "rules.yaml").setLastModified(1_000_000_000L));
+        RulesetScanner.RulesetDirectory scanned = scan(dir);
+        assertTrue(cache.needsRead(scanned));
+        List<byte[]> ruleFiles = new ArrayList<>();
+        for (Path file : scanned.ruleFiles) {
+            ruleFiles.add(Files.readAllBytes(file));
+        }
+        RulesetScanner.Contents contents = new RulesetScanner.Contents(scanned,
+                Files.readAllBytes(scanned.rulesetFile), ruleFiles);
+        cache.resolve(scanned, contents, parser(List.of()));
+        assertEquals(1, cache.getReusedCount());
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    void savedManifestIsReadAsRuleStore() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File spring = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        File quarkus = writeRuleset(root, "quarkus", "rules.yaml", "- ruleID: quarkus-00010");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(spring), parser(List.of()));
+        cache.resolve(scan(quarkus), parser(List.of()));
+        cache.save(manifest);
+
+        // In directory name order
+        RuleStore store = RulesetCache.readRuleStore(manifest);
+        assertEquals(2, store.getRulesetCount());
+        assertEquals("quarkus", store.getRulesetName(0));
+        assertEquals("spring rules", store.getRulesetDescription(1));
+        assertEquals("spring-00010", store.getTextString(store.getFirstRule(1), RuleStore.RULE_ID));
+    }
+
+    @Test
+    void rulesetWithParseErrorsIsNotReused() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File dir = writeRuleset(root, "spring", "rules.yaml", "- ruleID: [");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+        List<ParseError> errors = List.of(new ParseError("spring", "rules.yaml", new IOException("not valid YAML")));
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(errors));
+        cache.save(manifest);
+
+        cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(errors));
+        cache.save(manifest);
+        assertEquals(2, parses.get());
+        assertEquals(0, cache.getReusedCount());
+
+        // The rules that did parse are still part of the snapshot
+        RuleStore store = RulesetCache.readRuleStore(manifest);
+        assertEquals(1, store.getRulesetCount());
+        assertEquals("spring", store.getRulesetName(0));
+    }
+
+    @Test
+    void snapshotHoldsOnlyVisitedDirectories() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File spring = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        File quarkus = writeRuleset(root, "quarkus", "rules.yaml", "- ruleID: quarkus-00010");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(spring), parser(List.of()));
+        cache.resolve(scan(quarkus), parser(List.of()));
+        cache.save(manifest);
+        assertEquals(2, RulesetCache.readRuleStore(manifest).getRulesetCount());
+
+        cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(spring), parser(List.of()));
+        cache.save(manifest);
+        RuleStore store = RulesetCache.readRuleStore(manifest);
+        assertEquals(1, store.getRulesetCount());
+        assertEquals("spring", store.getRulesetName(0));
+
+        // The entry of the directory left out is kept for a later run
+        cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(quarkus), parser(List.of()));
+        assertEquals(1, cache.getReusedCount());
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    void versionOneManifestIsReadAsSnapshotButNotReused() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        File dir = writeRuleset(root, "spring", "rules.yaml", "- ruleID: spring-00010");
+        File manifest = new File(tempDir, RulesetCache.MANIFEST_FILE);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(manifest))) {
+            out.writeInt(0x41435253);
+            out.writeInt(1);
+            writeString(out, root.getAbsolutePath());
+            out.writeInt(1);
+            writeString(out, "spring");
+            out.writeInt(0); // no file stamps
+            out.writeBoolean(true);
+            writeString(out, "spring");
+            writeString(out, "Migrate to Spring Boot 3");
+            out.writeInt(2);
+            for (String value : new String[] {"spring-00010", "java.referenced: {}", "Replace javax with jakarta",
+                    "spring-boot", "spring-boot3", "framework", "mandatory"}) {
+                writeString(out, value);
+            }
+            for (String value : new String[] {"spring-00020", null, "Überprüfen", null, null, null, null}) {
+                writeString(out, value);
+            }
+        }
+
+        RuleStore store = RulesetCache.readRuleStore(manifest);
+        assertEquals(1, store.getRulesetCount());
+        assertEquals("Migrate to Spring Boot 3", store.getRulesetDescription(0));
+        assertEquals(2, store.getRuleCount());
+        assertEquals("spring-00010", store.getTextString(0, RuleStore.RULE_ID));
+        assertEquals("spring-boot3", store.getLabel(0, RuleStore.TARGET));
+        assertEquals("Überprüfen", store.getTextString(1, RuleStore.MESSAGE));
+        assertNull(store.getTextString(1, RuleStore.WHEN));
+
+        // Its rules lack their condition providers, extract parses them again
+        RulesetCache cache = RulesetCache.load(manifest, root);
+        cache.resolve(scan(dir), parser(List.of()));
+        assertEquals(1, parses.get());
+    }
+
+    private Function<RulesetScanner.RulesetDirectory, ParsedRuleset> parser(List<ParseError> errors) {
+        return subDir -> {
+            parses.incrementAndGet();
+            String name = subDir.dir.getName();
+            RuleData rule = new RuleData(name + "-00010", "java.referenced: {}", "description");
+            rule.providers = "java.referenced";
+            ParsedRuleset ruleset = new ParsedRuleset(name, name + " rules", new ArrayList<>(List.of(rule)));
+            ruleset.errors = errors;
+            return ruleset;
+        };
+    }
+
+    // The directory as the extract sees it, scanned with its parent
+    private static RulesetScanner.RulesetDirectory scan(File dir) throws IOException {
+        for (RulesetScanner.RulesetDirectory directory : RulesetScanner.scan(dir.getParentFile(), List.of())) {
+            if (directory.dir.equals(dir)) {
+                return directory;
+            }
+        }
+        throw new IOException(dir + " not found");
+    }
+
+    private static File writeRuleset(File root, String name, String fileName, String content) throws IOException {
+        File dir = new File(root, name);
+        Files.createDirectories(dir.toPath());
+        Files.writeString(new File(dir, fileName).toPath(), content, StandardCharsets.UTF_8);
+        return dir;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
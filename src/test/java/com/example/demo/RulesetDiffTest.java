@@ -0,0 +1,151 @@
+package com.example.demo;
+
+import com.example.demo.RulesetDiff.Catalog;
+import com.example.demo.RulesetDiff.Change;
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RulesetDiffTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void addedRemovedAndModifiedRules() {
+        RuleStore base = store(ruleset("spring",
+                rule("spring-00010", "java.referenced: a", "Replace javax", "spring-boot"),
+                rule("spring-00020", "java.referenced: b", "Removed in Boot 3", "spring-boot"),
+                rule("spring-00030", "java.referenced: c", "Unchanged", "spring-boot")));
+        RuleStore current = store(ruleset("spring",
+                rule("spring-00010", "java.referenced: a", "Replace javax with jakarta", "spring-boot2"),
+                rule("spring-00030", "java.referenced: c", "Unchanged", "spring-boot"),
+                rule("spring-00040", "java.referenced: d", "New in Boot 3.2", "spring-boot")));
+
+        List<Change> changes = RulesetDiff.diff(new Catalog(base), new Catalog(current));
+        assertEquals(4, changes.size());
+        // Removed first, then added, then one row per changed field
+        assertChange(changes.get(0), RulesetDiff.REMOVED, "spring-00020", null, "Removed in Boot 3", null);
+        assertChange(changes.get(1), RulesetDiff.ADDED, "spring-00040", null, null, "New in Boot 3.2");
+        assertChange(changes.get(2), RulesetDiff.MODIFIED, "spring-00010", "Description & Message",
+                "Replace javax", "Replace javax with jakarta");
+        assertChange(changes.get(3), RulesetDiff.MODIFIED, "spring-00010", "Source", "spring-boot", "spring-boot2");
+        assertEquals(changes.get(2).rule, changes.get(3).rule);
+        assertEquals("spring", changes.get(0).ruleset);
+    }
+
+    @Test
+    void fieldChangedOnlyInWhen() {
+        RuleStore base = store(ruleset("spring", rule("spring-00010", "java.referenced:\n  pattern: javax.*", "Message", null)));
+        RuleStore current = store(ruleset("spring", rule("spring-00010", "java.referenced:\n  pattern: jakarta.*", "Message", null)));
+
+        List<Change> changes = RulesetDiff.diff(new Catalog(base), new Catalog(current));
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), RulesetDiff.MODIFIED, "spring-00010", "When",
+                "java.referenced:\n  pattern: javax.*", "java.referenced:\n  pattern: jakarta.*");
+    }
+
+    @Test
+    void duplicateRuleIdsOnBothSides() {
+        RuleStore base = store(
+                ruleset("openjdk11", rule("dup-00010", "when-a", "First", null), rule("dup-00010", "when-b", "Second", null)),
+                ruleset("openjdk17", rule("dup-00010", "when-c", "Third", null)));
+        // Reordered within and across rulesets: identical rules are matched first, so nothing changed
+        RuleStore reordered = store(
+                ruleset("openjdk11", rule("dup-00010", "when-b", "Second", null)),
+                ruleset("openjdk17", rule("dup-00010", "when-c", "Third", null)),
+                ruleset("openjdk11", rule("dup-00010", "when-a", "First", null)));
+        assertEquals(List.of(), RulesetDiff.diff(new Catalog(base), new Catalog(reordered)));
+
+        // A changed duplicate is paired with the one of its own ruleset, the extra one is added
+        RuleStore current = store(
+                ruleset("openjdk11", rule("dup-00010", "when-a", "First", null), rule("dup-00010", "when-b", "Second", null)),
+                ruleset("openjdk17", rule("dup-00010", "when-c", "Third, reworded", null), rule("dup-00010", "when-d", "Fourth", null)));
+        List<Change> changes = RulesetDiff.diff(new Catalog(base), new Catalog(current));
+        assertEquals(2, changes.size());
+        assertChange(changes.get(0), RulesetDiff.ADDED, "dup-00010", null, null, "Fourth");
+        assertEquals("openjdk17", changes.get(0).ruleset);
+        assertChange(changes.get(1), RulesetDiff.MODIFIED, "dup-00010", "Description & Message", "Third", "Third, reworded");
+
+        // Fewer duplicates: the unmatched one is removed
+        RuleStore fewer = store(ruleset("openjdk11", rule("dup-00010", "when-b", "Second", null)));
+        changes = RulesetDiff.diff(new Catalog(base), new Catalog(fewer));
+        assertEquals(2, changes.size());
+        assertChange(changes.get(0), RulesetDiff.REMOVED, "dup-00010", null, "First", null);
+        assertChange(changes.get(1), RulesetDiff.REMOVED, "dup-00010", null, "Third", null);
+    }
+
+    @Test
+    void rulesetThatFailsToParseFailsTheDiff() throws IOException {
+        File base = new File(tempDir, "base");
+        File current = new File(tempDir, "current");
+        File output = new File(tempDir, "output");
+        Files.createDirectories(output.toPath());
+        writeFile(base, "spring/ruleset.yaml", "name: spring\n");
+        writeFile(base, "spring/rules.yaml", "- ruleID: spring-00010\n  message: Replace javax\n");
+        writeFile(current, "spring/ruleset.yaml", "name: spring\n");
+        writeFile(current, "spring/rules.yaml", "- ruleID: [spring-00010\n");
+        ExtractOptions options = new ExtractOptions().setFormats(List.of(RuleStoreWriter.FORMAT_CSV));
+
+        // Its rules would otherwise show as removed
+        assertThrows(IOException.class, () -> RulesetDiff.run(base, current, output, options));
+        File errors = new File(output, RulesetToExcel.ERRORS_FILE);
+        assertTrue(errors.isFile());
+        assertTrue(Files.readString(errors.toPath(), StandardCharsets.UTF_8).contains("spring,rules.yaml,"));
+        File report = new File(output, RulesetDiff.REPORT_FILE + "." + RuleStoreWriter.FORMAT_CSV);
+        assertFalse(report.exists());
+
+        writeFile(current, "spring/rules.yaml", "- ruleID: spring-00010\n  message: Replace javax with jakarta\n");
+        RulesetDiff.run(base, current, output, options);
+        assertFalse(errors.exists());
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of("Change,Ruleset,RuleID,Field,Old,New",
+                "modified,spring,spring-00010,Description & Message,Replace javax,Replace javax with jakarta"), lines);
+    }
+
+    private static void assertChange(Change change, String type, String ruleId, String field, String oldValue, String newValue) {
+        assertEquals(type, change.type);
+        assertEquals(ruleId, change.ruleId);
+        assertEquals(field, change.field);
+        assertEquals(oldValue, change.oldValue);
+        assertEquals(newValue, change.newValue);
+        if (!type.equals(RulesetDiff.MODIFIED)) {
+            assertEquals(-1, change.rule);
+        }
+    }
+
+    private static RuleStore store(ParsedRuleset... rulesets) {
+        RuleStore store = new RuleStore(List.of());
+        for (ParsedRuleset ruleset : rulesets) {
+            store.add(ruleset);
+        }
+        return store;
+    }
+
+    private static ParsedRuleset ruleset(String name, RuleData... rules) {
+        return new ParsedRuleset(name, null, new ArrayList<>(List.of(rules)));
+    }
+
+    private static RuleData rule(String ruleId, String when, String message, String source) {
+        return new RuleData(ruleId, when, message, source, null, null, null);
+    }
+
+    private static void writeFile(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+    }
+}
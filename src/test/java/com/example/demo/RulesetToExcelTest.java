@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParseError;
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RulesetToExcelTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void ruleWithUnexpectedTypeIsSkippedAlone() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        writeFile(root, "spring/ruleset.yaml", "name: spring\n");
+        writeFile(root, "spring/rules.yaml", String.join("\n",
+                "- ruleID: spring-00010",
+                "  message: First",
+                "- ruleID: 42",
+                "  message: Numeric ruleID",
+                "- ruleID: spring-00030",
+                "  message: [not, a, string]",
+                "- ruleID: spring-00040",
+                "  message: Last",
+                ""));
+        RulesetScanner.RulesetDirectory directory = RulesetScanner.scan(root, List.of()).get(0);
+
+        ParsedRuleset fromFiles = RulesetToExcel.parseSubDirectory(directory, 10_000);
+        ParsedRuleset fromContents = RulesetToExcel.parseContents(contents(directory), 10_000);
+        for (ParsedRuleset ruleset : List.of(fromFiles, fromContents)) {
+            assertFalse(ruleset.isFailed());
+            assertEquals(List.of("spring-00010", "spring-00040"), ruleIds(ruleset));
+            assertEquals(2, ruleset.errors.size());
+            ParseError numeric = ruleset.errors.get(0);
+            assertEquals("spring", numeric.ruleset);
+            assertEquals("rules.yaml", numeric.file);
+            assertTrue(numeric.message.startsWith("Rule #2: ClassCastException"), numeric.message);
+            assertTrue(ruleset.errors.get(1).message.startsWith("Rule spring-00030: ClassCastException"));
+        }
+    }
+
+    @Test
+    void fileOverItsBudgetFailsAndTheOthersParse() throws IOException {
+        File root = new File(tempDir, "rulesets");
+        writeFile(root, "spring/ruleset.yaml", "name: spring\n");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            large.append("- ruleID: large-").append(i).append("\n  message: Rule ").append(i)
+                    .append("\n  when:\n    java.referenced:\n      pattern: org.example.Type").append(i).append('\n');
+        }
+        writeFile(root, "spring/large.yaml", large.toString());
+        writeFile(root, "spring/small.yaml", "- ruleID: spring-00010\n  message: Small\n");
+        RulesetScanner.RulesetDirectory directory = RulesetScanner.scan(root, List.of()).get(0);
+
+        ParsedRuleset ruleset = RulesetToExcel.parseSubDirectory(directory, 1);
+        assertEquals(List.of("spring-00010"), ruleIds(ruleset));
+        assertEquals(1, ruleset.errors.size());
+        assertEquals("large.yaml", ruleset.errors.get(0).file);
+        assertTrue(ruleset.errors.get(0).message.contains("Parse timeout of 1 ms exceeded"), ruleset.errors.get(0).message);
+
+        // Without a budget the same file parses
+        assertEquals(20_001, RulesetToExcel.parseSubDirectory(directory, 0).rules.size());
+    }
+
+    private static RulesetScanner.Contents contents(RulesetScanner.RulesetDirectory directory) throws IOException {
+        List<byte[]> ruleFiles = new ArrayList<>();
+        for (Path file : directory.ruleFiles) {
+            ruleFiles.add(Files.readAllBytes(file));
+        }
+        return new RulesetScanner.Contents(directory, Files.readAllBytes(directory.rulesetFile), ruleFiles);
+    }
+
+    private static List<String> ruleIds(ParsedRuleset ruleset) {
+        List<String> ids = new ArrayList<>();
+        for (RuleData rule : ruleset.rules) {
+            ids.add(rule.ruleId);
+        }
+        return ids;
+    }
+
+    private static void writeFile(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+    }
+}
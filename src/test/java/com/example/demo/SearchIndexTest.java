@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void rewrittenSegmentIsSearchedAfterReopen() throws IOException {
+        File indexDir = new File(tempDir, SearchIndexWriter.INDEX_DIR);
+        File dirA = new File(tempDir, "a");
+        File dirB = new File(tempDir, "b");
+        ParsedRuleset rulesetA = ruleset("ruleset-a",
+                new RuleData("a-1", "java.referenced: org.springframework.boot", "spring spring boot config"),
+                new RuleData("a-2", null, "quarkus native image build"));
+
+        SearchIndexWriter writer = new SearchIndexWriter(indexDir);
+        writer.add(dirA, rulesetA);
+        writer.add(dirB, ruleset("ruleset-b", new RuleData("b-1", null, "spring quarkus boot config")));
+        writer.finish();
+
+        SearchIndex index = SearchIndex.open(indexDir);
+        assertEquals(3, index.getDocCount());
+        assertEquals(List.of("a-1", "b-1"), ruleIds(index.search("spring", 10)));
+        // Adjacent tokens only, b-1 has both words but not as a phrase
+        assertEquals(List.of("a-1"), ruleIds(index.search("\"spring boot\"", 10)));
+        assertEquals(List.of("a-1"), ruleIds(index.search("org.springframework", 10)));
+
+        File segmentA = new File(indexDir, SearchIndexWriter.segmentName(dirA.getName()));
+        long stamp = 1_000_000_000L;
+        assertTrue(segmentA.setLastModified(stamp));
+
+        writer = new SearchIndexWriter(indexDir);
+        writer.add(dirA, rulesetA);
+        writer.add(dirB, ruleset("ruleset-b",
+                new RuleData("b-1", null, "micronaut quarkus boot config"),
+                new RuleData("b-2", null, "spring data spring jpa spring")));
+        writer.finish();
+
+        // The unchanged ruleset keeps its segment
+        assertEquals(stamp, segmentA.lastModified());
+        index = SearchIndex.open(indexDir);
+        assertEquals(4, index.getDocCount());
+        List<SearchIndex.Hit> hits = index.search("spring", 10);
+        assertEquals(List.of("b-2", "a-1"), ruleIds(hits));
+        assertEquals("ruleset-b", hits.get(0).getRuleset());
+        assertEquals("spring data spring jpa spring", hits.get(0).getSnippet());
+        assertTrue(hits.get(0).score > hits.get(1).score);
+        assertEquals(List.of("b-1"), ruleIds(index.search("micronaut", 10)));
+        assertEquals(List.of("b-2"), ruleIds(index.search("spring", 1)));
+    }
+
+    @Test
+    void segmentOfRemovedRulesetIsDeleted() throws IOException {
+        File indexDir = new File(tempDir, SearchIndexWriter.INDEX_DIR);
+        SearchIndexWriter writer = new SearchIndexWriter(indexDir);
+        writer.add(new File(tempDir, "a"), ruleset("ruleset-a", new RuleData("a-1", null, "spring boot")));
+        writer.add(new File(tempDir, "b"), ruleset("ruleset-b", new RuleData("b-1", null, "spring data")));
+        writer.finish();
+
+        writer = new SearchIndexWriter(indexDir);
+        writer.add(new File(tempDir, "a"), ruleset("ruleset-a", new RuleData("a-1", null, "spring boot")));
+        writer.finish();
+
+        SearchIndex index = SearchIndex.open(indexDir);
+        assertEquals(1, index.getDocCount());
+        assertEquals(List.of("a-1"), ruleIds(index.search("spring", 10)));
+        assertEquals(List.of(), ruleIds(index.search("data", 10)));
+    }
+
+    private static ParsedRuleset ruleset(String name, RuleData... rules) {
+        return new ParsedRuleset(name, name + " description", new ArrayList<>(List.of(rules)));
+    }
+
+    private static List<String> ruleIds(List<SearchIndex.Hit> hits) {
+        List<String> ids = new ArrayList<>();
+        for (SearchIndex.Hit hit : hits) {
+            ids.add(hit.getRuleId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo;
+
+import com.example.demo.RulesetToExcel.ParsedRuleset;
+import com.example.demo.RulesetToExcel.RuleData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedXlsxRuleStoreWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void failedShardKeepsShardsOfEarlierRun() throws IOException {
+        ShardedXlsxRuleStoreWriter writer = new ShardedXlsxRuleStoreWriter(100, ShardPolicy.parse("group"));
+        File index = new File(tempDir, writer.getFileName());
+        File spring = new File(tempDir, ShardedXlsxRuleStoreWriter.SHARD_PREFIX + "spring.xlsx");
+        File quarkus = new File(tempDir, ShardedXlsxRuleStoreWriter.SHARD_PREFIX + "quarkus.xlsx");
+        File openjdk = new File(tempDir, ShardedXlsxRuleStoreWriter.SHARD_PREFIX + "openjdk.xlsx");
+        writer.write(store("spring", "quarkus"), index);
+        assertTrue(spring.isFile());
+        assertTrue(quarkus.isFile());
+        long springLength = spring.length();
+        long indexLength = index.length();
+
+        // The quarkus shard cannot be written, a directory is in the way of its temporary file
+        File blocked = new File(tempDir, quarkus.getName() + ".tmp");
+        Files.createDirectories(blocked.toPath());
+        assertThrows(IOException.class, () -> writer.write(store("spring", "quarkus", "openjdk"), index));
+        assertEquals(springLength, spring.length());
+        assertEquals(indexLength, index.length());
+        assertTrue(quarkus.isFile());
+        assertFalse(openjdk.exists());
+        assertFalse(new File(tempDir, spring.getName() + ".tmp").exists());
+        assertFalse(new File(tempDir, openjdk.getName() + ".tmp").exists());
+
+        // Once it can, the shard left out is deleted
+        Files.delete(blocked.toPath());
+        writer.write(store("spring", "openjdk"), index);
+        assertTrue(spring.isFile());
+        assertTrue(openjdk.isFile());
+        assertFalse(quarkus.exists());
+    }
+
+    private static RuleStore store(String... names) {
+        RuleStore store = new RuleStore(List.of());
+        for (String name : names) {
+            RuleData rule = new RuleData(name + "-00010", "java.referenced: {}", "Migrate " + name);
+            store.add(new ParsedRuleset(name, name + " rules", new ArrayList<>(List.of(rule))));
+        }
+        return store;
+    }
+}